@@ -0,0 +1,9 @@
+package jlox;
+
+/*
+    A statement pre-compiled by ClosureCompiler, the Evaluator counterpart for statements.
+ */
+@FunctionalInterface
+interface Action {
+    void execute(Object[] locals);
+}
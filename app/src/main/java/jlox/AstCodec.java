@@ -0,0 +1,393 @@
+package jlox;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+    The .loxc format: a parsed program, before it's optimized or resolved, as bytes.
+
+        header   magic "LOXC", format version, payload length and payload CRC-32, 4 bytes each
+        payload  strings, then the top level statements
+
+    Every name and string literal is stored once, in the string table up front, and
+    referred to by index, so decoding interns names just like scanning does. Every node
+    is a tag followed by its fields. Statements are written in pre-order, and a missing
+    else branch is the NONE tag. Expressions are written in post-order, ending with
+    the NONE tag, so a missing initializer is the NONE tag alone. Neither encoding nor
+    decoding them recurses, so expressions of any depth round trip. Tokens in the tree
+    never carry a literal, so a token is just its type, lexeme and line. Counts, indices
+    and lines are unsigned varints.
+
+    FORMAT_VERSION has to change whenever the encoding does, or the tree's shape does.
+ */
+class AstCodec {
+    static final int FORMAT_VERSION = 3;
+
+    private static final int MAGIC = 0x4c4f5843; // "LOXC"
+    private static final int HEADER_SIZE = 16;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private static final byte NONE = 0;
+    private static final byte BLOCK = 1;
+    private static final byte EXPRESSION = 2;
+    private static final byte PRINT = 3;
+    private static final byte VAR = 4;
+    private static final byte IF = 5;
+    private static final byte ASSIGN = 6;
+    private static final byte BINARY = 7;
+    private static final byte GROUPING = 8;
+    private static final byte LITERAL = 9;
+    private static final byte UNARY = 10;
+    private static final byte VARIABLE = 11;
+    private static final byte WHILE = 12;
+
+    private static final byte NIL_VALUE = 0;
+    private static final byte FALSE_VALUE = 1;
+    private static final byte TRUE_VALUE = 2;
+    private static final byte NUMBER_VALUE = 3;
+    private static final byte STRING_VALUE = 4;
+
+    static byte[] encode(List<Stmt> statements) {
+        var writer = new Writer();
+        writer.varint(statements.size());
+        for (Stmt statement : statements) {
+            writer.stmt(statement);
+        }
+        var payload = writer.finish();
+
+        var crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .array();
+    }
+
+    // Reads from data's position on; IllegalArgumentException if it isn't a whole, intact program of this version
+    static List<Stmt> decode(ByteBuffer data) {
+        if (data.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("Truncated header");
+        }
+        if (data.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a .loxc file");
+        }
+        var version = data.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Format version " + version + ", expected " + FORMAT_VERSION);
+        }
+        var length = data.getInt();
+        var expectedCrc = data.getInt();
+        if (length != data.remaining()) {
+            throw new IllegalArgumentException("Payload is " + data.remaining() + " bytes, expected " + length);
+        }
+
+        var payload = data.slice();
+        var crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IllegalArgumentException("Payload checksum mismatch");
+        }
+
+        try {
+            return new Reader(payload).program();
+        } catch (RuntimeException e) {
+            // Only a payload written by a broken encoder gets here, the CRC catches anything else
+            throw new IllegalArgumentException("Malformed payload", e);
+        }
+    }
+
+    private static class Writer implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+        private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> stringTable = new ArrayList<>();
+        private final PostOrder postOrder = new PostOrder();
+        private final Consumer<Expr> visit = expr -> expr.accept(this);
+
+        // The string table, then the nodes, which had to be written first to fill it
+        byte[] finish() {
+            var nodeBytes = nodes.toByteArray();
+            nodes.reset();
+            varint(stringTable.size());
+            for (var string : stringTable) {
+                var bytes = string.getBytes(StandardCharsets.UTF_8);
+                varint(bytes.length);
+                nodes.writeBytes(bytes);
+            }
+            nodes.writeBytes(nodeBytes);
+            return nodes.toByteArray();
+        }
+
+        void stmt(Stmt stmt) {
+            if (stmt == null) {
+                nodes.write(NONE);
+            } else {
+                stmt.accept(this);
+            }
+        }
+
+        // Each node's operands are written before it
+        void expr(Expr expr) {
+            if (expr != null) {
+                postOrder.walk(expr, visit);
+            }
+            nodes.write(NONE);
+        }
+
+        void token(Token token) {
+            nodes.write(token.type.ordinal());
+            string(token.lexeme);
+            varint(token.line);
+        }
+
+        void string(String string) {
+            varint(strings.computeIfAbsent(string, s -> {
+                stringTable.add(s);
+                return stringTable.size() - 1;
+            }));
+        }
+
+        void varint(int value) {
+            while ((value & ~0x7f) != 0) {
+                nodes.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            nodes.write(value);
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            nodes.write(BLOCK);
+            varint(stmt.statements.size());
+            for (Stmt statement : stmt.statements) {
+                stmt(statement);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            nodes.write(EXPRESSION);
+            expr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            nodes.write(PRINT);
+            expr(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            nodes.write(VAR);
+            token(stmt.name);
+            expr(stmt.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmtStmt(Stmt.IfStmt stmt) {
+            nodes.write(IF);
+            expr(stmt.condition);
+            stmt(stmt.thenBranch);
+            stmt(stmt.elseBranch);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            nodes.write(WHILE);
+            expr(stmt.condition);
+            stmt(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            nodes.write(ASSIGN);
+            token(expr.name);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            nodes.write(BINARY);
+            token(expr.operator);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            nodes.write(GROUPING);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            nodes.write(LITERAL);
+            var value = expr.value;
+            if (value == null) {
+                nodes.write(NIL_VALUE);
+            } else if (value instanceof Boolean) {
+                nodes.write((Boolean) value ? TRUE_VALUE : FALSE_VALUE);
+            } else if (value instanceof Double) {
+                nodes.write(NUMBER_VALUE);
+                var bits = Double.doubleToRawLongBits((Double) value);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    nodes.write((int) (bits >>> shift));
+                }
+            } else if (value instanceof String) {
+                nodes.write(STRING_VALUE);
+                string((String) value);
+            } else {
+                throw new IllegalArgumentException("Can't encode a literal " + value.getClass().getSimpleName());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            nodes.write(UNARY);
+            token(expr.operator);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            nodes.write(VARIABLE);
+            token(expr.name);
+            return null;
+        }
+    }
+
+    private static class Reader {
+        private final ByteBuffer data;
+        private final List<Expr> operands = new ArrayList<>();
+        private String[] strings;
+
+        Reader(ByteBuffer data) {
+            this.data = data;
+        }
+
+        List<Stmt> program() {
+            strings = new String[varint()];
+            for (int i = 0; i < strings.length; i++) {
+                var bytes = new byte[varint()];
+                data.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            var statements = statements();
+            if (data.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing bytes after the program");
+            }
+            return statements;
+        }
+
+        private List<Stmt> statements() {
+            var count = varint();
+            var statements = new ArrayList<Stmt>(count);
+            for (int i = 0; i < count; i++) {
+                statements.add(stmt());
+            }
+            return statements;
+        }
+
+        private Stmt stmt() {
+            var tag = data.get();
+            switch (tag) {
+                case NONE: return null;
+                case BLOCK: return new Stmt.Block(statements());
+                case EXPRESSION: return new Stmt.Expression(expr());
+                case PRINT: return new Stmt.Print(expr());
+                case VAR: {
+                    var name = token();
+                    return new Stmt.Var(name, expr());
+                }
+                case IF: {
+                    var condition = expr();
+                    var thenBranch = stmt();
+                    return new Stmt.IfStmt(condition, thenBranch, stmt());
+                }
+                case WHILE: {
+                    var condition = expr();
+                    return new Stmt.While(condition, stmt());
+                }
+                default: throw new IllegalArgumentException("Unknown statement tag " + tag);
+            }
+        }
+
+        // Nodes take their operands off a stack and leave themselves on it, until the NONE tag
+        private Expr expr() {
+            operands.clear();
+            while (true) {
+                var tag = data.get();
+                switch (tag) {
+                    case NONE:
+                        if (operands.size() > 1) {
+                            throw new IllegalArgumentException(operands.size() + " expressions where one was expected");
+                        }
+                        return operands.isEmpty() ? null : pop();
+                    case ASSIGN: operands.add(new Expr.Assign(token(), pop())); break;
+                    case BINARY: {
+                        var operator = token();
+                        var right = pop();
+                        operands.add(new Expr.Binary(pop(), operator, right));
+                        break;
+                    }
+                    case GROUPING: operands.add(new Expr.Grouping(pop())); break;
+                    case LITERAL: operands.add(new Expr.Literal(value())); break;
+                    case UNARY: operands.add(new Expr.Unary(token(), pop())); break;
+                    case VARIABLE: operands.add(new Expr.Variable(token())); break;
+                    default: throw new IllegalArgumentException("Unknown expression tag " + tag);
+                }
+            }
+        }
+
+        private Expr pop() {
+            if (operands.isEmpty()) {
+                throw new IllegalArgumentException("Missing operand");
+            }
+            return operands.remove(operands.size() - 1);
+        }
+
+        private Object value() {
+            var tag = data.get();
+            switch (tag) {
+                case NIL_VALUE: return null;
+                case FALSE_VALUE: return false;
+                case TRUE_VALUE: return true;
+                case NUMBER_VALUE: return data.getDouble();
+                case STRING_VALUE: return strings[varint()];
+                default: throw new IllegalArgumentException("Unknown literal tag " + tag);
+            }
+        }
+
+        private Token token() {
+            var type = TYPES[data.get()];
+            var lexeme = strings[varint()];
+            return new Token(type, lexeme, null, varint());
+        }
+
+        private int varint() {
+            var value = 0;
+            for (int shift = 0; ; shift += 7) {
+                var b = data.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) return value;
+                if (shift > 28) throw new IllegalArgumentException("Varint too long");
+            }
+        }
+    }
+}
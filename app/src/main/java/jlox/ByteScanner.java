@@ -0,0 +1,241 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static jlox.TokenType.*;
+
+/*
+    Scanner working directly on UTF-8 bytes, typically a memory mapped script, so the file
+    is never decoded into a String. Produces the same tokens and errors as Scanner does for
+    the decoded text, except that token offsets count bytes.
+
+    Lox syntax is all ASCII, so each byte is classified by table lookup and runs of identifier,
+    digit and whitespace bytes are consumed in tight loops. Only string literals, lexemes asked for
+    later, the first occurrence of each identifier and stray non-ASCII characters ever get decoded.
+    Numbers are converted in place: when they have at most 15 digits in all, both the digits and
+    the power of ten for their decimals are exact doubles, so a single division is correctly rounded,
+    the same value Double.parseDouble gives; anything longer still goes through parseDouble.
+ */
+class ByteScanner {
+    private static final byte ALPHA = 1;
+    private static final byte DIGIT = 2;
+    private static final byte SPACE = 4;
+
+    private static final byte[] classes = new byte[256];
+    // Tokens that are always exactly one byte long
+    private static final TokenType[] singles = new TokenType[256];
+    // Keyword spellings and their types, by first byte
+    private static final byte[][][] keywords = new byte[256][0][];
+    private static final TokenType[][] keywordTypes = new TokenType[256][0];
+
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] powersOfTen = new double[MAX_FAST_DIGITS + 1];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) classes[c] = ALPHA;
+        for (int c = 'A'; c <= 'Z'; c++) classes[c] = ALPHA;
+        classes['_'] = ALPHA;
+        for (int c = '0'; c <= '9'; c++) classes[c] = DIGIT;
+        classes[' '] = SPACE;
+        classes['\r'] = SPACE;
+        classes['\t'] = SPACE;
+
+        singles['('] = LEFT_PAREN;
+        singles[')'] = RIGHT_PAREN;
+        singles['{'] = LEFT_BRACE;
+        singles['}'] = RIGHT_BRACE;
+        singles[','] = COMMA;
+        singles['.'] = DOT;
+        singles['-'] = MINUS;
+        singles['+'] = PLUS;
+        singles[';'] = SEMICOLON;
+        singles['*'] = STAR;
+
+        for (var type : TokenType.values()) {
+            var spelling = type.name().toLowerCase();
+            if (TokenType.getKeyword(spelling).orElse(null) != type) continue;
+
+            var first = spelling.charAt(0);
+            var count = keywords[first].length;
+            keywords[first] = Arrays.copyOf(keywords[first], count + 1);
+            keywordTypes[first] = Arrays.copyOf(keywordTypes[first], count + 1);
+            keywords[first][count] = spelling.getBytes(StandardCharsets.US_ASCII);
+            keywordTypes[first][count] = type;
+        }
+
+        powersOfTen[0] = 1;
+        for (int i = 1; i < powersOfTen.length; i++) {
+            powersOfTen[i] = powersOfTen[i - 1] * 10;
+        }
+    }
+
+    private final ByteBuffer source;
+    private final int end;
+    private final Diagnostics diagnostics;
+    private final Symbols symbols = new Symbols();
+    private int current = 0;
+    private int line = 1;
+
+    ByteScanner(ByteBuffer source, Diagnostics diagnostics) {
+        this.source = source;
+        this.end = source.limit();
+        this.diagnostics = diagnostics;
+    }
+
+    ByteScanner(byte[] source, Diagnostics diagnostics) {
+        this(ByteBuffer.wrap(source), diagnostics);
+    }
+
+    // A whole file, mapped read only; the mapping can't be larger than 2GB
+    static MappedByteBuffer map(Path file) throws IOException {
+        try (var channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    TokenBuffer scan() {
+        var tokens = new TokenBuffer(this::decode);
+
+        while (current < end) {
+            var start = current;
+            var c = source.get(current++) & 0xff;
+            var type = singles[c];
+            if (type != null) {
+                tokens.add(type, start, 1, line, null);
+                continue;
+            }
+
+            var kind = classes[c];
+            if (kind == SPACE) {
+                while (current < end && classes[source.get(current) & 0xff] == SPACE) current++;
+            } else if (kind == ALPHA) {
+                while (current < end && (classes[source.get(current) & 0xff] & (ALPHA | DIGIT)) != 0) current++;
+                var length = current - start;
+                var word = keyword(start, length);
+                tokens.add(word, start, length, line, word == IDENTIFIER ? symbols.intern(source, start, length) : null);
+            } else if (kind == DIGIT) {
+                var value = number(start);
+                tokens.add(NUMBER, start, current - start, line, value);
+            } else {
+                switch (c) {
+                    case '!': twoByte(tokens, start, BANG, BANG_EQUAL); break;
+                    case '=': twoByte(tokens, start, EQUAL, EQUAL_EQUAL); break;
+                    case '<': twoByte(tokens, start, LESS, LESS_EQUAL); break;
+                    case '>': twoByte(tokens, start, GREATER, GREATER_EQUAL); break;
+                    case '/':
+                        if (current < end && source.get(current) == '/') {
+                            // Stop before the newline, so it still gets counted
+                            while (current < end && source.get(current) != '\n') current++;
+                        } else {
+                            tokens.add(SLASH, start, 1, line, null);
+                        }
+                        break;
+                    case '\n':
+                        line++;
+                        break;
+                    case '"':
+                        string(tokens, start);
+                        break;
+                    default:
+                        unexpected(start, c);
+                        break;
+                }
+            }
+        }
+
+        tokens.add(EOF, end, 0, line, null);
+        return tokens;
+    }
+
+    private void twoByte(TokenBuffer tokens, int start, TokenType single, TokenType withEqual) {
+        if (current < end && source.get(current) == '=') {
+            current++;
+            tokens.add(withEqual, start, 2, line, null);
+        } else {
+            tokens.add(single, start, 1, line, null);
+        }
+    }
+
+    private TokenType keyword(int start, int length) {
+        var candidates = keywords[source.get(start) & 0xff];
+        next:
+        for (int k = 0; k < candidates.length; k++) {
+            var spelling = candidates[k];
+            if (spelling.length != length) continue;
+            for (int i = 1; i < length; i++) {
+                if (source.get(start + i) != spelling[i]) continue next;
+            }
+            return keywordTypes[source.get(start) & 0xff][k];
+        }
+        return IDENTIFIER;
+    }
+
+    // Same shape as Scanner's: digits, then a fraction only if a digit follows the dot
+    private double number(int start) {
+        long mantissa = source.get(start) - '0';
+        var digits = 1;
+        while (current < end && isDigit(source.get(current))) {
+            mantissa = mantissa * 10 + (source.get(current++) - '0');
+            digits++;
+        }
+
+        var decimals = 0;
+        if (current + 1 < end && source.get(current) == '.' && isDigit(source.get(current + 1))) {
+            current++;
+            while (current < end && isDigit(source.get(current))) {
+                mantissa = mantissa * 10 + (source.get(current++) - '0');
+                decimals++;
+            }
+        }
+
+        // mantissa has wrapped around if there were more than 18 digits, but then it isn't used
+        if (digits + decimals <= MAX_FAST_DIGITS) {
+            return mantissa / powersOfTen[decimals];
+        }
+        return Double.parseDouble(decode(start, current - start));
+    }
+
+    private void string(TokenBuffer tokens, int start) {
+        while (current < end && source.get(current) != '"') {
+            if (source.get(current) == '\n') line++;
+            current++;
+        }
+
+        if (current >= end) {
+            diagnostics.error(line, "Unterminated string.");
+            return;
+        }
+
+        // Closing "
+        current++;
+        tokens.add(STRING, start, current - start, line, decode(start + 1, current - start - 2));
+    }
+
+    // Scanner reports each char it doesn't expect, so a non-ASCII character gets decoded first
+    private void unexpected(int start, int c) {
+        var length = c >= 0xf0 ? 4 : c >= 0xe0 ? 3 : c >= 0xc0 ? 2 : 1;
+        length = Math.min(length, end - start);
+        current = start + length;
+
+        var text = decode(start, length);
+        for (int i = 0; i < text.length(); i++) {
+            diagnostics.error(line, "Unexpected character [" + text.charAt(i) + "].");
+        }
+    }
+
+    private String decode(int start, int length) {
+        var bytes = new byte[length];
+        source.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,251 @@
+package jlox;
+
+import java.util.List;
+
+import static jlox.OpCode.*;
+
+/*
+    Compiles a resolved program into a single Chunk for the VM.
+    Every block local lives in one flat array, laid out by LocalsLayout.
+ */
+class BytecodeCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    static class CompileError extends RuntimeException {}
+
+    private static final int MAX_OPERAND = 0xffff;
+
+    private final Diagnostics diagnostics;
+    private final Chunk chunk = new Chunk();
+    private final LocalsLayout locals = new LocalsLayout();
+    private int stackDepth = 0;
+    // Literals carry no token, so they are attributed to the last line seen
+    private int line = 1;
+
+    BytecodeCompiler(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    Chunk compile(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emit(RETURN, 0);
+        chunk.maxLocals = locals.maxLocals();
+        return chunk;
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        locals.enterBlock(stmt.slots);
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+        locals.exitBlock();
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(PRINT, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        line = stmt.name.line;
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emit(NIL, 1);
+        }
+
+        line = stmt.name.line;
+        if (stmt.depth < 0) {
+            emitWithOperand(DEFINE_GLOBAL, -1, globalSlot(stmt.slot));
+        } else {
+            emitWithOperand(SET_LOCAL, 0, localIndex(0, stmt.slot));
+            emit(POP, -1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmtStmt(Stmt.IfStmt stmt) {
+        compile(stmt.condition);
+        var elseJump = emitJump(JUMP_IF_FALSE, -1);
+        compile(stmt.thenBranch);
+
+        if (stmt.elseBranch == null) {
+            patchJump(elseJump);
+            return null;
+        }
+
+        var endJump = emitJump(JUMP, 0);
+        patchJump(elseJump);
+        compile(stmt.elseBranch);
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        var loopStart = chunk.count();
+        compile(stmt.condition);
+        var exitJump = emitJump(JUMP_IF_FALSE, -1);
+        compile(stmt.body);
+        emitLoop(loopStart);
+        patchJump(exitJump);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+
+        line = expr.name.line;
+        if (expr.depth < 0) {
+            emitWithOperands(SET_GLOBAL, 0, globalSlot(expr.slot), constant(expr.name));
+        } else {
+            emitWithOperand(SET_LOCAL, 0, localIndex(expr.depth, expr.slot));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case EQUAL_EQUAL: emit(EQUAL, -1); break;
+            case BANG_EQUAL: emit(EQUAL, -1); emit(NOT, 0); break;
+            case GREATER: emit(GREATER, -1); break;
+            case GREATER_EQUAL: emit(GREATER_EQUAL, -1); break;
+            case LESS: emit(LESS, -1); break;
+            case LESS_EQUAL: emit(LESS_EQUAL, -1); break;
+            case PLUS: emit(ADD, -1); break;
+            case MINUS: emit(SUBTRACT, -1); break;
+            case STAR: emit(MULTIPLY, -1); break;
+            case SLASH: emit(DIVIDE, -1); break;
+            default: throw error("Unsupported binary operator " + expr.operator.lexeme);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(NIL, 1);
+        } else if (Boolean.TRUE.equals(expr.value)) {
+            emit(TRUE, 1);
+        } else if (Boolean.FALSE.equals(expr.value)) {
+            emit(FALSE, 1);
+        } else {
+            emitWithOperand(CONSTANT, 1, constant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        compile(expr.right);
+
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case BANG: emit(NOT, 0); break;
+            case MINUS: emit(NEGATE, 0); break;
+            default: throw error("Unsupported unary operator " + expr.operator.lexeme);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        line = expr.name.line;
+        if (expr.depth < 0) {
+            emitWithOperands(GET_GLOBAL, 1, globalSlot(expr.slot), constant(expr.name));
+        } else {
+            emitWithOperand(GET_LOCAL, 1, localIndex(expr.depth, expr.slot));
+        }
+        return null;
+    }
+
+    private int localIndex(int depth, int slot) {
+        return checkOperand(locals.index(depth, slot), "Too many local variables");
+    }
+
+    private int globalSlot(int slot) {
+        return checkOperand(slot, "Too many global variables");
+    }
+
+    // Global names are kept as tokens, so the VM can report undefined variables at their line
+    private int constant(Object value) {
+        return checkOperand(chunk.addConstant(value), "Too many constants in one program");
+    }
+
+    private void emit(byte op, int stackEffect) {
+        chunk.write(op, line);
+        stackDepth += stackEffect;
+        chunk.maxStack = Math.max(chunk.maxStack, stackDepth);
+    }
+
+    private void emitWithOperand(byte op, int stackEffect, int operand) {
+        emit(op, stackEffect);
+        chunk.write((byte) (operand >> 8), line);
+        chunk.write((byte) operand, line);
+    }
+
+    private void emitWithOperands(byte op, int stackEffect, int first, int second) {
+        emitWithOperand(op, stackEffect, first);
+        chunk.write((byte) (second >> 8), line);
+        chunk.write((byte) second, line);
+    }
+
+    private int emitJump(byte op, int stackEffect) {
+        emitWithOperand(op, stackEffect, MAX_OPERAND);
+        return chunk.count() - 2;
+    }
+
+    private void patchJump(int operandOffset) {
+        var jump = checkOperand(chunk.count() - operandOffset - 2, "Too much code to jump over");
+        chunk.patch(operandOffset, (byte) (jump >> 8));
+        chunk.patch(operandOffset + 1, (byte) jump);
+    }
+
+    // Jumps back to target, counting from the end of the LOOP instruction
+    private void emitLoop(int target) {
+        emitWithOperand(LOOP, 0, checkOperand(chunk.count() + 3 - target, "Loop body too large"));
+    }
+
+    private int checkOperand(int operand, String message) {
+        if (operand > MAX_OPERAND) throw error(message);
+        return operand;
+    }
+
+    private CompileError error(String message) {
+        diagnostics.error(line, message);
+        return new CompileError();
+    }
+}
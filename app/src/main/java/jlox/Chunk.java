@@ -0,0 +1,77 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    A compiled program: the code array, its constant pool and a run-length
+    encoded line table (a new entry only when the source line changes).
+ */
+class Chunk {
+    private byte[] code = new byte[256];
+    private int count = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+
+    private int[] lineOffsets = new int[16];
+    private int[] lines = new int[16];
+    private int lineCount = 0;
+
+    int maxLocals = 0;
+    int maxStack = 0;
+
+    void write(byte b, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+        }
+        if (lineCount == 0 || lines[lineCount - 1] != line) {
+            addLine(line);
+        }
+        code[count++] = b;
+    }
+
+    private void addLine(int line) {
+        if (lineCount == lines.length) {
+            lineOffsets = Arrays.copyOf(lineOffsets, lineCount * 2);
+            lines = Arrays.copyOf(lines, lineCount * 2);
+        }
+        lineOffsets[lineCount] = count;
+        lines[lineCount] = line;
+        lineCount++;
+    }
+
+    void patch(int offset, byte b) {
+        code[offset] = b;
+    }
+
+    // Equal constants share a pool entry
+    int addConstant(Object value) {
+        return constantIndices.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    int count() {
+        return count;
+    }
+
+    byte[] code() {
+        return Arrays.copyOf(code, count);
+    }
+
+    Object[] constants() {
+        return constants.toArray();
+    }
+
+    int lineAt(int offset) {
+        var index = Arrays.binarySearch(lineOffsets, 0, lineCount, offset);
+        // Not an exact hit: take the entry starting before the offset
+        if (index < 0) index = -index - 2;
+        return lines[index];
+    }
+}
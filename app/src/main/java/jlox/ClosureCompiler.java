@@ -0,0 +1,247 @@
+package jlox;
+
+import java.util.List;
+
+import static jlox.SpecializingNodes.number;
+import static jlox.Values.*;
+
+/*
+    Walks a resolved program once and turns every node into a lambda with its children,
+    operator and variable location already bound. The operator switch happens here,
+    at compile time, so at run time each node is a single monomorphic call
+    into code written for exactly that operator.
+
+    + and ==/!= work on more than one type, so they compile to SpecializingNodes instead,
+    which pick their implementation from the operand types they actually see.
+
+    Block locals live in one flat array laid out by LocalsLayout; globals and print are bound
+    to the Globals and output the compiler was created with.
+ */
+class ClosureCompiler implements Expr.Visitor<Evaluator>, Stmt.Visitor<Action> {
+    private final Globals globals;
+    private final Output out;
+    private final LocalsLayout locals = new LocalsLayout();
+
+    ClosureCompiler(Globals globals, Output out) {
+        this.globals = globals;
+        this.out = out;
+    }
+
+    Action[] compile(List<Stmt> statements) {
+        var actions = new Action[statements.size()];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = compile(statements.get(i));
+        }
+        return actions;
+    }
+
+    /*
+        A loop the Interpreter found hot, compiled to run in place of the rest of its iterations.
+        It runs on the array of the frame the loop is in, frameSize slots, 0 at the top level;
+        if maxLocals() then asks for more, the loop is at the top level, with a frame of its own.
+     */
+    Action compileLoop(Stmt.While loop, int frameSize) {
+        locals.enterBlock(frameSize);
+        var action = compile(loop);
+        locals.exitBlock();
+        return action;
+    }
+
+    // Size of the locals array the compiled program needs
+    int maxLocals() {
+        return locals.maxLocals();
+    }
+
+    private Action compile(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    private Evaluator compile(Expr expr) {
+        return expr.accept(this);
+    }
+
+    @Override
+    public Action visitBlockStmt(Stmt.Block stmt) {
+        locals.enterBlock(stmt.slots);
+        var body = compile(stmt.statements);
+        locals.exitBlock();
+
+        return frame -> {
+            for (var action : body) {
+                action.execute(frame);
+            }
+        };
+    }
+
+    @Override
+    public Action visitExpressionStmt(Stmt.Expression stmt) {
+        var expression = compile(stmt.expression);
+        return expression::evaluate;
+    }
+
+    @Override
+    public Action visitPrintStmt(Stmt.Print stmt) {
+        var expression = compile(stmt.expression);
+        return frame -> out.print(expression.evaluate(frame));
+    }
+
+    @Override
+    public Action visitVarStmt(Stmt.Var stmt) {
+        var initializer = stmt.initializer == null ? (Evaluator) frame -> null : compile(stmt.initializer);
+
+        if (stmt.depth < 0) {
+            var slot = stmt.slot;
+            return frame -> globals.define(slot, initializer.evaluate(frame));
+        }
+        var index = locals.index(0, stmt.slot);
+        return frame -> frame[index] = initializer.evaluate(frame);
+    }
+
+    @Override
+    public Action visitIfStmtStmt(Stmt.IfStmt stmt) {
+        var condition = compile(stmt.condition);
+        var thenBranch = compile(stmt.thenBranch);
+
+        if (stmt.elseBranch == null) {
+            return frame -> {
+                if (isTruthy(condition.evaluate(frame))) thenBranch.execute(frame);
+            };
+        }
+
+        var elseBranch = compile(stmt.elseBranch);
+        return frame -> {
+            if (isTruthy(condition.evaluate(frame))) {
+                thenBranch.execute(frame);
+            } else {
+                elseBranch.execute(frame);
+            }
+        };
+    }
+
+    @Override
+    public Action visitWhileStmt(Stmt.While stmt) {
+        var condition = compile(stmt.condition);
+        var body = compile(stmt.body);
+        return frame -> {
+            while (isTruthy(condition.evaluate(frame))) {
+                body.execute(frame);
+            }
+        };
+    }
+
+    @Override
+    public Evaluator visitAssignExpr(Expr.Assign expr) {
+        var value = compile(expr.value);
+
+        if (expr.depth < 0) {
+            var slot = expr.slot;
+            var name = expr.name;
+            return frame -> {
+                var result = value.evaluate(frame);
+                globals.assign(slot, name, result);
+                return result;
+            };
+        }
+        var index = locals.index(expr.depth, expr.slot);
+        return frame -> frame[index] = value.evaluate(frame);
+    }
+
+    @Override
+    public Evaluator visitBinaryExpr(Expr.Binary expr) {
+        var left = compile(expr.left);
+        var right = compile(expr.right);
+        var operator = expr.operator;
+
+        // Both operands are always evaluated before either is checked, like in the Interpreter
+        switch (operator.type) {
+            case EQUAL_EQUAL:
+                return new SpecializingNodes.Equal(false, left, right);
+            case BANG_EQUAL:
+                return new SpecializingNodes.Equal(true, left, right);
+            case PLUS:
+                return new SpecializingNodes.Add(operator, left, right);
+            case MINUS:
+                return frame -> {
+                    var l = left.evaluate(frame);
+                    var r = right.evaluate(frame);
+                    return number(operator, l) - number(operator, r);
+                };
+            case STAR:
+                return frame -> {
+                    var l = left.evaluate(frame);
+                    var r = right.evaluate(frame);
+                    return number(operator, l) * number(operator, r);
+                };
+            case SLASH:
+                return frame -> {
+                    var l = left.evaluate(frame);
+                    var r = right.evaluate(frame);
+                    return number(operator, l) / number(operator, r);
+                };
+            case GREATER:
+                return frame -> {
+                    var l = left.evaluate(frame);
+                    var r = right.evaluate(frame);
+                    return number(operator, l) > number(operator, r);
+                };
+            case GREATER_EQUAL:
+                return frame -> {
+                    var l = left.evaluate(frame);
+                    var r = right.evaluate(frame);
+                    return number(operator, l) >= number(operator, r);
+                };
+            case LESS:
+                return frame -> {
+                    var l = left.evaluate(frame);
+                    var r = right.evaluate(frame);
+                    return number(operator, l) < number(operator, r);
+                };
+            case LESS_EQUAL:
+                return frame -> {
+                    var l = left.evaluate(frame);
+                    var r = right.evaluate(frame);
+                    return number(operator, l) <= number(operator, r);
+                };
+            default:
+                throw new IllegalStateException("Unsupported binary operator " + operator.lexeme);
+        }
+    }
+
+    @Override
+    public Evaluator visitGroupingExpr(Expr.Grouping expr) {
+        // Nothing to do at run time, the grouping only mattered to the parser
+        return compile(expr.expression);
+    }
+
+    @Override
+    public Evaluator visitLiteralExpr(Expr.Literal expr) {
+        var value = expr.value;
+        return frame -> value;
+    }
+
+    @Override
+    public Evaluator visitUnaryExpr(Expr.Unary expr) {
+        var right = compile(expr.right);
+        var operator = expr.operator;
+
+        switch (operator.type) {
+            case BANG:
+                return frame -> !isTruthy(right.evaluate(frame));
+            case MINUS:
+                return frame -> -number(operator, right.evaluate(frame));
+            default:
+                throw new IllegalStateException("Unsupported unary operator " + operator.lexeme);
+        }
+    }
+
+    @Override
+    public Evaluator visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth < 0) {
+            var slot = expr.slot;
+            var name = expr.name;
+            return frame -> globals.get(slot, name);
+        }
+        var index = locals.index(expr.depth, expr.slot);
+        return frame -> frame[index];
+    }
+}
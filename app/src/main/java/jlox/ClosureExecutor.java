@@ -0,0 +1,32 @@
+package jlox;
+
+import java.util.List;
+
+/*
+    Runs programs pre-compiled into lambdas by ClosureCompiler. Selected with --engine=closure.
+ */
+class ClosureExecutor implements Executor {
+    private final Globals globals = new Globals();
+    private final Output out;
+    private final Diagnostics diagnostics;
+
+    ClosureExecutor(Output out, Diagnostics diagnostics) {
+        this.out = out;
+        this.diagnostics = diagnostics;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        var compiler = new ClosureCompiler(globals, out);
+        var program = compiler.compile(statements);
+        var locals = new Object[compiler.maxLocals()];
+
+        try {
+            for (var action : program) {
+                action.execute(locals);
+            }
+        } catch (RuntimeError e) {
+            diagnostics.runtimeError(e);
+        }
+    }
+}
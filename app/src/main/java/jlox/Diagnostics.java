@@ -0,0 +1,67 @@
+package jlox;
+
+import java.io.PrintStream;
+
+/*
+    Where the errors of one LoxContext go, and whether there were any.
+    Scanner, Parser, compilers and engines all report here instead of to a global,
+    so contexts running side by side never see each other's errors.
+ */
+class Diagnostics {
+    private final PrintStream err;
+    // Flushed before anything is reported, so errors come after the output that preceded them
+    private final Output out;
+    private boolean hadError = false;
+    private boolean hadRuntimeError = false;
+
+    Diagnostics(PrintStream err) {
+        this(err, null);
+    }
+
+    Diagnostics(PrintStream err, Output out) {
+        this.err = err;
+        this.out = out;
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void runtimeError(RuntimeError e) {
+        flushOutput();
+        err.println(e.getMessage() + "\n[line " + e.line + "]");
+        hadRuntimeError = true;
+    }
+
+    // Every compile error goes through here, so subclasses recording errors only override this
+    void report(int line, String where, String message) {
+        flushOutput();
+        err.printf("[line %s] Error%s: %s\n", line, where, message);
+        hadError = true;
+    }
+
+    private void flushOutput() {
+        if (out != null) out.flush();
+    }
+
+    boolean hadError() {
+        return hadError;
+    }
+
+    boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    void reset() {
+        hadError = false;
+        hadRuntimeError = false;
+    }
+}
@@ -0,0 +1,253 @@
+package jlox;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/*
+    Formats numbers the way Lox prints them: the shortest decimal that parses back to the same
+    double, written out in plain notation, never with an exponent, and without a trailing ".0".
+
+    Integral values below 2^53 are just their long value. Everything else gets its shortest
+    digits from Ryu (Ulf Adams, "Ryū: fast float-to-string conversion", PLDI 2018), which needs
+    only 64 bit arithmetic against a table of powers of 5, and a few divisions by 10.
+
+    Nothing here is shared but the tables, which never change once built, so any number of
+    threads can format at once. Digits go straight into the caller's buffer.
+ */
+final class DoubleFormatter {
+    private static final int MANTISSA_BITS = 52;
+    private static final int EXPONENT_BITS = 11;
+    private static final int EXPONENT_BIAS = 1023;
+    private static final long MANTISSA_MASK = (1L << MANTISSA_BITS) - 1;
+    private static final int EXPONENT_MASK = (1 << EXPONENT_BITS) - 1;
+    private static final long MAX_EXACT_INTEGRAL = 1L << 53;
+
+    private DoubleFormatter() {}
+
+    static String toString(double value) {
+        var sb = new StringBuilder(24);
+        format(value, sb);
+        return sb.toString();
+    }
+
+    static void format(double value, StringBuilder sb) {
+        var integral = (long) value;
+        if (integral == value && integral != 0 && integral > -MAX_EXACT_INTEGRAL && integral < MAX_EXACT_INTEGRAL) {
+            sb.append(integral);
+            return;
+        }
+
+        var bits = Double.doubleToRawLongBits(value);
+        var mantissa = bits & MANTISSA_MASK;
+        var exponent = (int) (bits >>> MANTISSA_BITS) & EXPONENT_MASK;
+        if (exponent == EXPONENT_MASK) {
+            sb.append(mantissa != 0 ? "NaN" : bits < 0 ? "-Infinity" : "Infinity");
+            return;
+        }
+        if (bits < 0) {
+            sb.append('-');
+        }
+        if (exponent == 0 && mantissa == 0) {
+            sb.append('0');
+            return;
+        }
+        Ryu.shortest(mantissa, exponent, sb);
+    }
+
+    // Appends digits * 10^exponent, in plain notation
+    private static void appendPlain(long digits, int exponent, StringBuilder sb) {
+        var start = sb.length();
+        sb.append(digits);
+        var length = sb.length() - start;
+
+        if (exponent >= 0) {
+            for (int i = 0; i < exponent; i++) sb.append('0');
+        } else if (-exponent < length) {
+            sb.insert(sb.length() + exponent, '.');
+        } else {
+            var zeros = new char[2 - exponent - length];
+            Arrays.fill(zeros, '0');
+            zeros[1] = '.';
+            sb.insert(start, zeros);
+        }
+    }
+
+    // Tables built on first use only, integral values never need them
+    private static final class Ryu {
+        private static final int POW5_BITCOUNT = 125;
+        private static final int POW5_INV_BITCOUNT = 125;
+        private static final int POW5_TABLE_SIZE = 326;
+        private static final int POW5_INV_TABLE_SIZE = 342;
+
+        // 5^i and 2^k / 5^i, each scaled to 125 bits and split in two 64 bit halves, low first
+        private static final long[][] POW5_SPLIT = new long[POW5_TABLE_SIZE][];
+        private static final long[][] POW5_INV_SPLIT = new long[POW5_INV_TABLE_SIZE][];
+
+        static {
+            var mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+            for (int i = 0; i < POW5_INV_TABLE_SIZE; i++) {
+                var pow = BigInteger.valueOf(5).pow(i);
+                var length = pow.bitLength();
+                if (i < POW5_TABLE_SIZE) {
+                    var shift = length - POW5_BITCOUNT;
+                    var pow5 = shift >= 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift);
+                    POW5_SPLIT[i] = split(pow5, mask);
+                }
+                var inverse = BigInteger.ONE.shiftLeft(length - 1 + POW5_INV_BITCOUNT).divide(pow).add(BigInteger.ONE);
+                POW5_INV_SPLIT[i] = split(inverse, mask);
+            }
+        }
+
+        private static long[] split(BigInteger value, BigInteger mask) {
+            return new long[] {value.and(mask).longValue(), value.shiftRight(64).longValue()};
+        }
+
+        static void shortest(long ieeeMantissa, int ieeeExponent, StringBuilder sb) {
+            int e2;
+            long m2;
+            if (ieeeExponent == 0) {
+                e2 = 1 - EXPONENT_BIAS - MANTISSA_BITS - 2;
+                m2 = ieeeMantissa;
+            } else {
+                e2 = ieeeExponent - EXPONENT_BIAS - MANTISSA_BITS - 2;
+                m2 = (1L << MANTISSA_BITS) | ieeeMantissa;
+            }
+            var acceptBounds = (m2 & 1) == 0;
+
+            // The value and the halfway points to its neighbours, all times 4 so they are integers
+            var mv = 4 * m2;
+            var mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+
+            // The same three, times 2^e2 / 10^e10, and which of them lost only zeros on the way
+            long vr, vp, vm;
+            int e10;
+            var vmIsTrailingZeros = false;
+            var vrIsTrailingZeros = false;
+            if (e2 >= 0) {
+                var q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+                e10 = q;
+                var k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+                var i = -e2 + q + k;
+                var multiplier = POW5_INV_SPLIT[q];
+                vr = mulShift(4 * m2, multiplier, i);
+                vp = mulShift(4 * m2 + 2, multiplier, i);
+                vm = mulShift(4 * m2 - 1 - mmShift, multiplier, i);
+                if (q <= 21) {
+                    // Only mv can be a multiple of 5 this large, if any of the three is
+                    if (mv % 5 == 0) {
+                        vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                    } else if (acceptBounds) {
+                        vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+                    } else if (multipleOfPowerOf5(mv + 2, q)) {
+                        vp--;
+                    }
+                }
+            } else {
+                var q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+                e10 = q + e2;
+                var i = -e2 - q;
+                var k = pow5bits(i) - POW5_BITCOUNT;
+                var j = q - k;
+                var multiplier = POW5_SPLIT[i];
+                vr = mulShift(4 * m2, multiplier, j);
+                vp = mulShift(4 * m2 + 2, multiplier, j);
+                vm = mulShift(4 * m2 - 1 - mmShift, multiplier, j);
+                if (q <= 1) {
+                    // mv has at least q trailing zero bits, so vr has q trailing zero digits
+                    vrIsTrailingZeros = true;
+                    if (acceptBounds) {
+                        vmIsTrailingZeros = mmShift == 1;
+                    } else {
+                        vp--;
+                    }
+                } else if (q < 63) {
+                    vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+                }
+            }
+
+            // Drops digits for as long as the result stays between the neighbours' halfway points
+            var removed = 0;
+            long output;
+            if (vmIsTrailingZeros || vrIsTrailingZeros) {
+                var lastRemovedDigit = 0;
+                while (vp / 10 > vm / 10) {
+                    vmIsTrailingZeros &= vm % 10 == 0;
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+                if (vmIsTrailingZeros) {
+                    while (vm % 10 == 0) {
+                        vrIsTrailingZeros &= lastRemovedDigit == 0;
+                        lastRemovedDigit = (int) (vr % 10);
+                        vr /= 10;
+                        vp /= 10;
+                        vm /= 10;
+                        removed++;
+                    }
+                }
+                if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                    // Exactly halfway, round to even
+                    lastRemovedDigit = 4;
+                }
+                var roundUp = (vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5;
+                output = vr + (roundUp ? 1 : 0);
+            } else {
+                var roundUp = false;
+                while (vp / 10 > vm / 10) {
+                    roundUp = vr % 10 >= 5;
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+                output = vr + (vr == vm || roundUp ? 1 : 0);
+            }
+
+            appendPlain(output, e10 + removed, sb);
+        }
+
+        // (m * multiplier) >> j, with the 125 bit multiplier in two halves and 64 < j < 128
+        private static long mulShift(long m, long[] multiplier, int j) {
+            var lowHigh = unsignedMultiplyHigh(m, multiplier[0]);
+            var highLow = m * multiplier[1];
+            var highHigh = unsignedMultiplyHigh(m, multiplier[1]);
+
+            var middle = lowHigh + highLow;
+            if (Long.compareUnsigned(middle, lowHigh) < 0) {
+                highHigh++;
+            }
+            var shift = j - 64;
+            return (middle >>> shift) | (highHigh << (64 - shift));
+        }
+
+        // m is never negative, so only b's top bit needs correcting for
+        private static long unsignedMultiplyHigh(long m, long b) {
+            return Math.multiplyHigh(m, b) + ((b >> 63) & m);
+        }
+
+        private static int pow5bits(int e) {
+            return (int) ((e * 1217359L) >>> 19) + 1;
+        }
+
+        private static int log10Pow2(int e) {
+            return (int) ((e * 78913L) >>> 18);
+        }
+
+        private static int log10Pow5(int e) {
+            return (int) ((e * 732923L) >>> 20);
+        }
+
+        private static boolean multipleOfPowerOf5(long value, int p) {
+            var count = 0;
+            while (value % 5 == 0) {
+                value /= 5;
+                count++;
+            }
+            return count >= p;
+        }
+    }
+}
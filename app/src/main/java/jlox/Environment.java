@@ -1,50 +1,42 @@
 package jlox;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/*
+    A single block scope. Variables are addressed by the (depth, slot) pair computed
+    by the Resolver, so there is no name lookup at runtime, just a walk up 'depth'
+    enclosing frames and an array access.
+ */
 class Environment {
-  private final Map<String, Object> values = new HashMap<>();
+  private final Object[] values;
 
   private final Environment enclosing;
 
-  public Environment() {
-    this.enclosing = null;
+  public Environment(Environment enclosing, int size) {
+    this.enclosing = enclosing;
+    this.values = new Object[size];
   }
 
-  public Environment(Environment enclosing) {
-    this.enclosing = enclosing;
+  void define(int slot, Object value) {
+    values[slot] = value;
   }
 
-  void define(String name, Object value) {
-    values.put(name, value);
-//    var oldVar = values.putIfAbsent(name, value);
-//    if (oldVar != null) {
-//      TODO throw new RuntimeError
-//    }
+  void assign(int depth, int slot, Object value) {
+    ancestor(depth).values[slot] = value;
   }
 
-  void assign(Token name, Object value) {
-    if (values.containsKey(name.lexeme)) {
-      values.put(name.lexeme, value);
-      return;
-    }
+  Object get(int depth, int slot) {
+    return ancestor(depth).values[slot];
+  }
 
-    if (enclosing != null) {
-      enclosing.assign(name, value);
-    }
-    throw new RuntimeError(name, "Variable " + name.lexeme + " is undefined");
+  // The frame's slots themselves, for code compiled to index them directly
+  Object[] values() {
+    return values;
   }
 
-  Object get(Token name) {
-    var value = values.get(name.lexeme);
-    //TODO can we try and make it a syntax error? (see 8.3 Environments in 'crafting interpreters')
-    if (value == null) {
-      if (enclosing != null) {
-        return enclosing.get(name);
-      }
-      throw new RuntimeError(name, "Variable " + name.lexeme + " is undefined");
+  private Environment ancestor(int depth) {
+    var environment = this;
+    for (int i = 0; i < depth; i++) {
+      environment = environment.enclosing;
     }
-    return value;
+    return environment;
   }
 }
@@ -0,0 +1,11 @@
+package jlox;
+
+/*
+    An expression pre-compiled by ClosureCompiler. Everything known at compile time
+    (operator, children, slot indexes, globals) is already bound in, so evaluating it
+    is a straight chain of calls with no dispatch on the AST.
+ */
+@FunctionalInterface
+interface Evaluator {
+    Object evaluate(Object[] locals);
+}
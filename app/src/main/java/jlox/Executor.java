@@ -0,0 +1,11 @@
+package jlox;
+
+import java.util.List;
+
+/*
+    An execution engine for resolved programs. Implementations keep their globals
+    between calls, so the prompt can run one line at a time.
+ */
+interface Executor {
+    void interpret(List<Stmt> statements);
+}
@@ -27,6 +27,9 @@ abstract class Expr {
 
         Token name;
         Expr value;
+
+        int depth = -1;
+        int slot = -1;
     }
 
     static class Binary extends Expr {
@@ -44,6 +47,8 @@ abstract class Expr {
         Expr left;
         Token operator;
         Expr right;
+
+        boolean numeric;
     }
 
     static class Grouping extends Expr {
@@ -98,6 +103,9 @@ abstract class Expr {
         }
 
         Token name;
+
+        int depth = -1;
+        int slot = -1;
     }
 
 }
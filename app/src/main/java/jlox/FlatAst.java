@@ -0,0 +1,331 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    A resolved program laid out in a few primitive arrays instead of a graph of node objects.
+
+    A node is an index. Every node has a kind and three int fields whose meaning depends
+    on the kind; operators are kept as token type ordinals, names and string literals
+    as indices into a string pool, numbers as the two halves of their bits.
+
+        kind        a               b               c
+        ----------------------------------------------------------------
+        BLOCK       first child     child count     slots
+        EXPRESSION  expression
+        PRINT       expression
+        VAR         initializer     name            slot
+        IF          condition       then            else
+        WHILE       condition       body
+        ASSIGN      value           name            local
+        BINARY      left            right           line
+        ARITHMETIC  left            right           line
+        GROUPING    expression
+        UNARY       operand                         line
+        VARIABLE                    name            local
+        NUMBER      high bits       low bits
+        STRING      string
+        NIL, TRUE, FALSE
+
+    ARITHMETIC is a binary node the Resolver marked numeric. A missing initializer or else
+    branch is -1, and so is the slot of a global. A local is its depth and slot packed into
+    one int, depth << 16 | slot; for a global it is minus the line, as only an undefined
+    global can fail. Children of a block, and the top level statements, are runs of node
+    indices in a separate array. A name has one slot in Globals in all of the program,
+    so the slots of globals are kept per name, by string index.
+
+    Lines are kept only where an error can happen, tokens aren't kept at all.
+ */
+final class FlatAst {
+    static final byte BLOCK = 0;
+    static final byte EXPRESSION = 1;
+    static final byte PRINT = 2;
+    static final byte VAR = 3;
+    static final byte IF = 4;
+    static final byte ASSIGN = 5;
+    static final byte BINARY = 6;
+    static final byte GROUPING = 7;
+    static final byte UNARY = 8;
+    static final byte VARIABLE = 9;
+    static final byte NUMBER = 10;
+    static final byte STRING = 11;
+    static final byte NIL = 12;
+    static final byte TRUE = 13;
+    static final byte FALSE = 14;
+    static final byte ARITHMETIC = 15;
+    static final byte WHILE = 16;
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int MAX_SLOT = 0xffff;
+    private static final int MAX_DEPTH = 0x7fff;
+
+    private final byte[] kinds;
+    private final byte[] operators;
+    private final int[] a;
+    private final int[] b;
+    private final int[] c;
+    private final int[] children;
+    private final String[] strings;
+    private final int[] globalSlots;
+    private final int statementCount;
+
+    private FlatAst(Builder builder) {
+        var count = builder.count;
+        kinds = Arrays.copyOf(builder.kinds, count);
+        operators = Arrays.copyOf(builder.operators, count);
+        a = Arrays.copyOf(builder.a, count);
+        b = Arrays.copyOf(builder.b, count);
+        c = Arrays.copyOf(builder.c, count);
+        children = Arrays.copyOf(builder.children, builder.childCount);
+        strings = builder.strings.toArray(new String[0]);
+        globalSlots = builder.globalSlots.stream().mapToInt(Integer::intValue).toArray();
+        statementCount = builder.statementCount;
+    }
+
+    // Flattens a resolved program
+    static FlatAst of(List<Stmt> statements) {
+        return new Builder().build(statements);
+    }
+
+    int size() {
+        return kinds.length;
+    }
+
+    int statementCount() {
+        return statementCount;
+    }
+
+    // The top level run is the last one in children, added once everything nested in it was
+    int statement(int index) {
+        return children[children.length - statementCount + index];
+    }
+
+    int child(int block, int index) {
+        return children[a[block] + index];
+    }
+
+    byte kind(int node) {
+        return kinds[node];
+    }
+
+    TokenType operator(int node) {
+        return TYPES[operators[node]];
+    }
+
+    // Of a node that can fail: BINARY, ARITHMETIC, UNARY, or a global's VARIABLE or ASSIGN
+    int line(int node) {
+        var c = this.c[node];
+        return c < 0 ? -c : c;
+    }
+
+    int a(int node) {
+        return a[node];
+    }
+
+    int b(int node) {
+        return b[node];
+    }
+
+    int c(int node) {
+        return c[node];
+    }
+
+    String string(int index) {
+        return strings[index];
+    }
+
+    // Slot in Globals of the global named by string index; -1 if the name isn't a global's
+    int globalSlot(int string) {
+        return globalSlots[string];
+    }
+
+    double number(int node) {
+        return Double.longBitsToDouble((long) a[node] << 32 | (b[node] & 0xffffffffL));
+    }
+
+    static int depth(int local) {
+        return local >>> 16;
+    }
+
+    static int slot(int local) {
+        return local & MAX_SLOT;
+    }
+
+    // Appends nodes children first, so a node's index is known by the time its parent is added
+    private static class Builder implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+        private int count = 0;
+        private byte[] kinds = new byte[256];
+        private byte[] operators = new byte[256];
+        private int[] a = new int[256];
+        private int[] b = new int[256];
+        private int[] c = new int[256];
+
+        private int childCount = 0;
+        private int[] children = new int[64];
+
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<Integer> globalSlots = new ArrayList<>();
+        private int statementCount;
+
+        FlatAst build(List<Stmt> statements) {
+            addChildren(statements);
+            statementCount = statements.size();
+            return new FlatAst(this);
+        }
+
+        // Children of one block go in one run, after any runs of blocks nested in them
+        private int addChildren(List<Stmt> statements) {
+            var nodes = new int[statements.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = statements.get(i).accept(this);
+            }
+
+            if (childCount + nodes.length > children.length) {
+                children = Arrays.copyOf(children, Math.max(children.length * 2, childCount + nodes.length));
+            }
+            var first = childCount;
+            System.arraycopy(nodes, 0, children, first, nodes.length);
+            childCount += nodes.length;
+            return first;
+        }
+
+        private int add(byte kind, int a, int b, int c) {
+            if (count == kinds.length) {
+                var capacity = count * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                operators = Arrays.copyOf(operators, capacity);
+                this.a = Arrays.copyOf(this.a, capacity);
+                this.b = Arrays.copyOf(this.b, capacity);
+                this.c = Arrays.copyOf(this.c, capacity);
+            }
+            kinds[count] = kind;
+            this.a[count] = a;
+            this.b[count] = b;
+            this.c[count] = c;
+            return count++;
+        }
+
+        private int add(byte kind, int a) {
+            return add(kind, a, 0, 0);
+        }
+
+        private int addOperator(byte kind, Token operator, int a, int b) {
+            var node = add(kind, a, b, operator.line);
+            operators[node] = (byte) operator.type.ordinal();
+            return node;
+        }
+
+        private int string(String string) {
+            return stringIndices.computeIfAbsent(string, s -> {
+                strings.add(s);
+                globalSlots.add(-1);
+                return strings.size() - 1;
+            });
+        }
+
+        private int name(Token name, int depth, int slot) {
+            var string = string(name.lexeme);
+            if (depth < 0) {
+                globalSlots.set(string, slot);
+            }
+            return string;
+        }
+
+        private static int local(Token name, int depth, int slot) {
+            if (depth < 0) return -name.line;
+            if (depth > MAX_DEPTH || slot > MAX_SLOT) {
+                throw new IllegalArgumentException("Local at depth " + depth + ", slot " + slot + " doesn't fit a flat tree");
+            }
+            return depth << 16 | slot;
+        }
+
+        private int node(Expr expr) {
+            return expr == null ? -1 : expr.accept(this);
+        }
+
+        private int node(Stmt stmt) {
+            return stmt == null ? -1 : stmt.accept(this);
+        }
+
+        @Override
+        public Integer visitBlockStmt(Stmt.Block stmt) {
+            var first = addChildren(stmt.statements);
+            return add(BLOCK, first, stmt.statements.size(), stmt.slots);
+        }
+
+        @Override
+        public Integer visitExpressionStmt(Stmt.Expression stmt) {
+            return add(EXPRESSION, node(stmt.expression));
+        }
+
+        @Override
+        public Integer visitPrintStmt(Stmt.Print stmt) {
+            return add(PRINT, node(stmt.expression));
+        }
+
+        @Override
+        public Integer visitVarStmt(Stmt.Var stmt) {
+            var initializer = node(stmt.initializer);
+            var name = name(stmt.name, stmt.depth, stmt.slot);
+            return add(VAR, initializer, name, stmt.depth < 0 ? -1 : stmt.slot);
+        }
+
+        @Override
+        public Integer visitIfStmtStmt(Stmt.IfStmt stmt) {
+            var condition = node(stmt.condition);
+            var thenBranch = node(stmt.thenBranch);
+            return add(IF, condition, thenBranch, node(stmt.elseBranch));
+        }
+
+        @Override
+        public Integer visitWhileStmt(Stmt.While stmt) {
+            var condition = node(stmt.condition);
+            return add(WHILE, condition, node(stmt.body), 0);
+        }
+
+        @Override
+        public Integer visitAssignExpr(Expr.Assign expr) {
+            var value = node(expr.value);
+            return add(ASSIGN, value, name(expr.name, expr.depth, expr.slot), local(expr.name, expr.depth, expr.slot));
+        }
+
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr) {
+            var left = node(expr.left);
+            return addOperator(expr.numeric ? ARITHMETIC : BINARY, expr.operator, left, node(expr.right));
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr) {
+            return add(GROUPING, node(expr.expression));
+        }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) {
+            var value = expr.value;
+            if (value == null) return add(NIL, 0);
+            if (value instanceof Boolean) return add((Boolean) value ? TRUE : FALSE, 0);
+            if (value instanceof String) return add(STRING, string((String) value));
+            if (value instanceof Double) {
+                var bits = Double.doubleToRawLongBits((Double) value);
+                return add(NUMBER, (int) (bits >>> 32), (int) bits, 0);
+            }
+            throw new IllegalArgumentException("Can't flatten a literal " + value.getClass().getSimpleName());
+        }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr) {
+            return addOperator(UNARY, expr.operator, node(expr.right), 0);
+        }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) {
+            return add(VARIABLE, 0, name(expr.name, expr.depth, expr.slot), local(expr.name, expr.depth, expr.slot));
+        }
+    }
+}
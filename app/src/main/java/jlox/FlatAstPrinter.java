@@ -0,0 +1,88 @@
+package jlox;
+
+import static jlox.FlatAst.*;
+
+/*
+    Prints a FlatAst by walking it by index. Expressions come out exactly as AstPrinter prints
+    them; statements get the same parenthesized form, one top level statement per line.
+ */
+class FlatAstPrinter {
+    private final FlatAst ast;
+
+    FlatAstPrinter(FlatAst ast) {
+        this.ast = ast;
+    }
+
+    String print() {
+        var sb = new StringBuilder();
+        for (int i = 0; i < ast.statementCount(); i++) {
+            print(sb, ast.statement(i));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    String print(int node) {
+        var sb = new StringBuilder();
+        print(sb, node);
+        return sb.toString();
+    }
+
+    private void print(StringBuilder sb, int node) {
+        switch (ast.kind(node)) {
+            case BLOCK:
+                sb.append("(block");
+                for (int i = 0; i < ast.b(node); i++) {
+                    sb.append(' ');
+                    print(sb, ast.child(node, i));
+                }
+                sb.append(')');
+                break;
+            case EXPRESSION: parenthesize(sb, ";", ast.a(node)); break;
+            case PRINT: parenthesize(sb, "print", ast.a(node)); break;
+            case VAR: parenthesize(sb, "var " + ast.string(ast.b(node)), ast.a(node)); break;
+            case IF: parenthesize(sb, "if", ast.a(node), ast.b(node), ast.c(node)); break;
+            case WHILE: parenthesize(sb, "while", ast.a(node), ast.b(node)); break;
+            case ASSIGN: parenthesize(sb, "= " + ast.string(ast.b(node)), ast.a(node)); break;
+            case BINARY: case ARITHMETIC: parenthesize(sb, lexeme(ast.operator(node)), ast.a(node), ast.b(node)); break;
+            case GROUPING: parenthesize(sb, "group", ast.a(node)); break;
+            case UNARY: parenthesize(sb, lexeme(ast.operator(node)), ast.a(node)); break;
+            case VARIABLE: sb.append(ast.string(ast.b(node))); break;
+            case NUMBER: sb.append(ast.number(node)); break;
+            case STRING: sb.append(ast.string(ast.a(node))); break;
+            case NIL: sb.append("nil"); break;
+            case TRUE: sb.append(true); break;
+            case FALSE: sb.append(false); break;
+            default: throw new IllegalStateException("Unknown kind of node " + node);
+        }
+    }
+
+    // Missing children, -1, are left out
+    private void parenthesize(StringBuilder sb, String name, int... children) {
+        sb.append('(').append(name);
+        for (int child : children) {
+            if (child < 0) continue;
+            sb.append(' ');
+            print(sb, child);
+        }
+        sb.append(')');
+    }
+
+    // The tree keeps operators as token types only, and every operator has one spelling
+    private static String lexeme(TokenType operator) {
+        switch (operator) {
+            case BANG: return "!";
+            case BANG_EQUAL: return "!=";
+            case EQUAL_EQUAL: return "==";
+            case GREATER: return ">";
+            case GREATER_EQUAL: return ">=";
+            case LESS: return "<";
+            case LESS_EQUAL: return "<=";
+            case MINUS: return "-";
+            case PLUS: return "+";
+            case SLASH: return "/";
+            case STAR: return "*";
+            default: throw new IllegalArgumentException("Not an operator " + operator);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package jlox;
+
+import java.util.List;
+
+import static jlox.FlatAst.*;
+import static jlox.Values.*;
+
+/*
+    Runs programs flattened into a FlatAst, walking them by node index. Selected with --engine=flat.
+
+    Same evaluation as the Interpreter, down to the unboxed arithmetic on subtrees the Resolver
+    marked numeric, and the same order of evaluation and type checks.
+ */
+class FlatInterpreter implements Executor {
+    private final Globals globals = new Globals();
+    private final Output out;
+    private final Diagnostics diagnostics;
+
+    private FlatAst ast;
+    // Innermost block frame, null at the top level
+    private Environment environment = null;
+
+    FlatInterpreter(Output out, Diagnostics diagnostics) {
+        this.out = out;
+        this.diagnostics = diagnostics;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        interpret(FlatAst.of(statements));
+    }
+
+    void interpret(FlatAst ast) {
+        this.ast = ast;
+        try {
+            for (int i = 0; i < ast.statementCount(); i++) {
+                execute(ast.statement(i));
+            }
+        } catch (RuntimeError e) {
+            diagnostics.runtimeError(e);
+        } finally {
+            environment = null;
+        }
+    }
+
+    private void execute(int node) {
+        switch (ast.kind(node)) {
+            case BLOCK: {
+                // Blocks without slots of their own run in the enclosing frame
+                if (ast.c(node) == 0) {
+                    for (int i = 0; i < ast.b(node); i++) {
+                        execute(ast.child(node, i));
+                    }
+                    break;
+                }
+                var previous = environment;
+                environment = new Environment(previous, ast.c(node));
+                try {
+                    for (int i = 0; i < ast.b(node); i++) {
+                        execute(ast.child(node, i));
+                    }
+                } finally {
+                    environment = previous;
+                }
+                break;
+            }
+            case EXPRESSION:
+                evaluate(ast.a(node));
+                break;
+            case PRINT:
+                out.print(evaluate(ast.a(node)));
+                break;
+            case VAR: {
+                var value = ast.a(node) < 0 ? null : evaluate(ast.a(node));
+                if (ast.c(node) < 0) {
+                    globals.define(ast.globalSlot(ast.b(node)), value);
+                } else {
+                    environment.define(ast.c(node), value);
+                }
+                break;
+            }
+            case IF:
+                if (evaluateBoolean(ast.a(node))) {
+                    execute(ast.b(node));
+                } else if (ast.c(node) >= 0) {
+                    execute(ast.c(node));
+                }
+                break;
+            case WHILE:
+                while (evaluateBoolean(ast.a(node))) {
+                    execute(ast.b(node));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Not a statement: node " + node);
+        }
+    }
+
+    private Object evaluate(int node) {
+        switch (ast.kind(node)) {
+            case NUMBER: return ast.number(node);
+            case STRING: return ast.string(ast.a(node));
+            case NIL: return null;
+            case TRUE: return true;
+            case FALSE: return false;
+            case GROUPING: return evaluate(ast.a(node));
+            case VARIABLE: {
+                var local = ast.c(node);
+                if (local < 0) {
+                    return globals.get(ast.globalSlot(ast.b(node)), ast.string(ast.b(node)), ast.line(node));
+                }
+                return environment.get(depth(local), slot(local));
+            }
+            case ASSIGN: {
+                var value = evaluate(ast.a(node));
+                var local = ast.c(node);
+                if (local < 0) {
+                    globals.assign(ast.globalSlot(ast.b(node)), ast.string(ast.b(node)), ast.line(node), value);
+                } else {
+                    environment.assign(depth(local), slot(local), value);
+                }
+                return value;
+            }
+            case UNARY:
+                if (ast.operator(node) == TokenType.BANG) {
+                    return !evaluateBoolean(ast.a(node));
+                }
+                return evaluateDouble(node);
+            case BINARY:
+                return binary(node);
+            case ARITHMETIC:
+                return evaluateDouble(node);
+            default:
+                throw new IllegalStateException("Not an expression: node " + node);
+        }
+    }
+
+    private Object binary(int node) {
+        switch (ast.operator(node)) {
+            case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+            case EQUAL_EQUAL: case BANG_EQUAL:
+                return evaluateBoolean(node);
+        }
+
+        var operator = ast.operator(node);
+        var left = evaluate(ast.a(node));
+        var right = evaluate(ast.b(node));
+        if (left instanceof CharSequence && right instanceof CharSequence && operator == TokenType.PLUS) {
+            return concat(left, right);
+        }
+
+        var leftNum = requireDouble(node, left);
+        var rightNum = requireDouble(node, right);
+        switch (operator) {
+            case MINUS: return leftNum - rightNum;
+            case PLUS: return leftNum + rightNum;
+            case SLASH: return leftNum / rightNum;
+            case STAR: return leftNum * rightNum;
+        }
+        throw new IllegalStateException("Not a binary operator: node " + node);
+    }
+
+    private double evaluateDouble(int node) {
+        switch (ast.kind(node)) {
+            case NUMBER: return ast.number(node);
+            case GROUPING: return evaluateDouble(ast.a(node));
+            case UNARY: return -numericOperand(node, ast.a(node));
+        }
+
+        double left;
+        double right;
+        if (isNumeric(ast.a(node))) {
+            left = evaluateDouble(ast.a(node));
+            right = numericOperand(node, ast.b(node));
+        } else {
+            var leftValue = evaluate(ast.a(node));
+            if (isNumeric(ast.b(node))) {
+                right = evaluateDouble(ast.b(node));
+                left = requireDouble(node, leftValue);
+            } else {
+                var rightValue = evaluate(ast.b(node));
+                left = requireDouble(node, leftValue);
+                right = requireDouble(node, rightValue);
+            }
+        }
+
+        switch (ast.operator(node)) {
+            case MINUS: return left - right;
+            case PLUS: return left + right;
+            case SLASH: return left / right;
+            case STAR: return left * right;
+        }
+        throw new IllegalStateException("Not a numeric operator: node " + node);
+    }
+
+    private double numericOperand(int operator, int operand) {
+        if (isNumeric(operand)) {
+            return evaluateDouble(operand);
+        }
+        return requireDouble(operator, evaluate(operand));
+    }
+
+    private boolean evaluateBoolean(int node) {
+        var kind = ast.kind(node);
+        if (kind == BINARY) {
+            switch (ast.operator(node)) {
+                case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+                    return compare(node);
+                case EQUAL_EQUAL:
+                    return equal(node);
+                case BANG_EQUAL:
+                    return !equal(node);
+            }
+        } else if (kind == UNARY && ast.operator(node) == TokenType.BANG) {
+            return !evaluateBoolean(ast.a(node));
+        } else if (kind == GROUPING) {
+            return evaluateBoolean(ast.a(node));
+        }
+
+        if (isNumeric(node)) {
+            evaluateDouble(node);
+            return true;
+        }
+        return isTruthy(evaluate(node));
+    }
+
+    private boolean compare(int node) {
+        double left;
+        double right;
+        if (isNumeric(ast.a(node))) {
+            left = evaluateDouble(ast.a(node));
+            right = numericOperand(node, ast.b(node));
+        } else {
+            var leftValue = evaluate(ast.a(node));
+            if (isNumeric(ast.b(node))) {
+                right = evaluateDouble(ast.b(node));
+                left = requireDouble(node, leftValue);
+            } else {
+                var rightValue = evaluate(ast.b(node));
+                left = requireDouble(node, leftValue);
+                right = requireDouble(node, rightValue);
+            }
+        }
+
+        switch (ast.operator(node)) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            case LESS_EQUAL: return left <= right;
+        }
+        throw new IllegalStateException("Not a comparison operator: node " + node);
+    }
+
+    private boolean equal(int node) {
+        var leftNode = ast.a(node);
+        var rightNode = ast.b(node);
+        if (isNumeric(leftNode)) {
+            var left = evaluateDouble(leftNode);
+            if (isNumeric(rightNode)) {
+                return sameDouble(left, evaluateDouble(rightNode));
+            }
+            var right = evaluate(rightNode);
+            return right instanceof Double && sameDouble(left, (double) right);
+        }
+
+        var left = evaluate(leftNode);
+        if (isNumeric(rightNode)) {
+            var right = evaluateDouble(rightNode);
+            return left instanceof Double && sameDouble((double) left, right);
+        }
+        return isEqual(left, evaluate(rightNode));
+    }
+
+    // Same as Double.equals, which is what isEqual ends up calling for numbers
+    private static boolean sameDouble(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    // Resolver.isNumeric, for flat nodes
+    private boolean isNumeric(int node) {
+        switch (ast.kind(node)) {
+            case ARITHMETIC: return true;
+            case UNARY: return ast.operator(node) == TokenType.MINUS;
+            case GROUPING: return isNumeric(ast.a(node));
+            case NUMBER: return true;
+            default: return false;
+        }
+    }
+
+    private double requireDouble(int operator, Object operand) {
+        if (operand instanceof Double) {
+            return (double) operand;
+        }
+        throw new RuntimeError(ast.line(operator), operandError(ast.operator(operator) == TokenType.PLUS));
+    }
+}
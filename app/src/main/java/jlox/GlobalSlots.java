@@ -0,0 +1,33 @@
+package jlox;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/*
+    Slots of the global variables of every program one engine compiles. The Resolver gives
+    each global name its slot here, so a name has the same slot in every program of the engine,
+    and a context running any of them finds the variable at the same index of its Globals.
+
+    Names are interned in a Symbols table of the engine's own and their slots found by identity.
+    An engine compiles for any number of threads, so lookups are synchronized; they only
+    happen while resolving, never while running.
+ */
+final class GlobalSlots {
+    private final Symbols symbols = new Symbols();
+    private final Map<String, Integer> slots = new IdentityHashMap<>();
+
+    synchronized int slot(String name) {
+        var symbol = symbols.intern(name);
+        var slot = slots.get(symbol);
+        if (slot == null) {
+            slot = slots.size();
+            slots.put(symbol, slot);
+        }
+        return slot;
+    }
+
+    // How many global names have a slot so far
+    synchronized int size() {
+        return slots.size();
+    }
+}
@@ -0,0 +1,58 @@
+package jlox;
+
+import java.util.Arrays;
+
+/*
+    Top level variables of one context, in an array indexed by the slots the Resolver took
+    from the engine's GlobalSlots, so a global is an array access away, like a local.
+    Slots of names nobody defined yet hold UNDEFINED; the array grows to the highest slot
+    the context's programs define.
+
+    Names are only needed to report an undefined variable, so they come with every access.
+ */
+class Globals {
+  // Tells a missing variable from one that is nil in a single lookup
+  private static final Object UNDEFINED = new Object();
+
+  private Object[] values = newValues(16);
+
+  void define(int slot, Object value) {
+    if (slot >= values.length) {
+      var grown = newValues(Math.max(values.length * 2, slot + 1));
+      System.arraycopy(values, 0, grown, 0, values.length);
+      values = grown;
+    }
+    values[slot] = value;
+  }
+
+  void assign(int slot, Token name, Object value) {
+    assign(slot, name.lexeme, name.line, value);
+  }
+
+  // For engines that don't keep tokens, just names and lines
+  void assign(int slot, String name, int line, Object value) {
+    if (slot >= values.length || values[slot] == UNDEFINED) {
+      throw new RuntimeError(line, "Variable " + name + " is undefined");
+    }
+    values[slot] = value;
+  }
+
+  Object get(int slot, Token name) {
+    return get(slot, name.lexeme, name.line);
+  }
+
+  Object get(int slot, String name, int line) {
+    //TODO can we try and make it a syntax error? (see 8.3 Environments in 'crafting interpreters')
+    var value = slot < values.length ? values[slot] : UNDEFINED;
+    if (value == UNDEFINED) {
+      throw new RuntimeError(line, "Variable " + name + " is undefined");
+    }
+    return value;
+  }
+
+  private static Object[] newValues(int length) {
+    var values = new Object[length];
+    Arrays.fill(values, UNDEFINED);
+    return values;
+  }
+}
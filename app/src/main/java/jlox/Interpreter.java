@@ -1,22 +1,105 @@
 package jlox;
 
-import java.text.DecimalFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import static jlox.TokenType.*;
+import static jlox.Values.*;
+
+/*
+  Walks the tree recursively, evaluating numeric subtrees unboxed.
+
+  Each interpreter counts the back edges of the loops it runs, and once a loop has looped back
+  hotLoopThreshold times, counting every time this interpreter ran it, the rest of its
+  iterations, and every later run of it, go through the ClosureCompiler instead: compiled once,
+  with variable slots resolved to array indices and + and ==/!= specializing on the types they
+  see. The compiled loop runs on the same frame and globals, so it just picks up where the
+  interpreted iterations left off. Engines with a compiler of their own, like the JitExecutor,
+  give the interpreter a LoopCompiler to use instead. Counts and compiled loops are dropped
+  along with the program they're for.
+
+  In stack mode, expressions are evaluated by a StackEvaluator instead, with stacks of its own
+  rather than the thread's, for expressions nested deeper than recursion would survive.
+  Loops never tier up in stack mode, as compiled code recurses on the thread's stack again.
+ */
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>, Executor {
+  static final int HOT_LOOP_THRESHOLD = 1000;
+  // A threshold loops never reach
+  static final int NEVER = Integer.MAX_VALUE;
+
+  private final Globals globals;
+  private final Output out;
+  private final Diagnostics diagnostics;
+  // Set in stack mode only
+  private final StackEvaluator stack;
+  private final int hotLoopThreshold;
+  private final LoopCompiler loopCompiler;
+  // What this interpreter knows about each loop it ran, the program itself is never written to.
+  // Weak keys, compared by identity as statements don't override equals, so a long lived context
+  // doesn't keep every program it ran; nothing compiled refers back to its loop
+  private final Map<Stmt.While, LoopProfile> loops = new WeakHashMap<>();
+  // Innermost block frame, null at the top level
+  private Environment environment = null;
+
+  // Back edges counted until the loop is hot, then its code, compiled for this interpreter
+  private static final class LoopProfile {
+    int backEdges;
+    CompiledLoop compiled;
+  }
+
+  /*
+    Compiles the loops an Interpreter found hot, given the frame the loop is in, or null at the top
+    level, where the loop gets a frame of maxLocals slots of its own.
+   */
+  interface LoopCompiler {
+    CompiledLoop compile(Stmt.While loop, Object[] frame);
+  }
+
+  record CompiledLoop(Action loop, int maxLocals) {}
+
+  // Standalone interpreter, printing to stdout and reporting to stderr
+  public Interpreter() {
+    this(Output.of(System.out), new Diagnostics(System.err));
+  }
+
+  Interpreter(Output out, Diagnostics diagnostics) {
+    this(new Globals(), out, diagnostics);
+  }
+
+  // For engines that fall back to interpreting, sharing their globals
+  Interpreter(Globals globals, Output out, Diagnostics diagnostics) {
+    this(globals, out, diagnostics, false);
+  }
+
+  Interpreter(Globals globals, Output out, Diagnostics diagnostics, boolean stackMode) {
+    this(globals, out, diagnostics, stackMode, HOT_LOOP_THRESHOLD);
+  }
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-  private final static DecimalFormat noTrailingZeroesFormat =  new DecimalFormat("0.#");
+  // Loops tier up after hotLoopThreshold back edges, never if it's NEVER
+  Interpreter(Globals globals, Output out, Diagnostics diagnostics, boolean stackMode, int hotLoopThreshold) {
+    this(globals, out, diagnostics, stackMode, hotLoopThreshold, null);
+  }
 
-  private Environment environment = new Environment();
+  // Hot loops are compiled by loopCompiler, or the ClosureCompiler if it's null
+  Interpreter(Globals globals, Output out, Diagnostics diagnostics, boolean stackMode, int hotLoopThreshold,
+              LoopCompiler loopCompiler) {
+    this.globals = globals;
+    this.out = out;
+    this.diagnostics = diagnostics;
+    this.stack = stackMode ? new StackEvaluator(globals) : null;
+    this.hotLoopThreshold = stackMode ? NEVER : hotLoopThreshold;
+    this.loopCompiler = loopCompiler == null ? this::compileToClosures : loopCompiler;
+  }
 
-  void interpret(List<Stmt> statements) {
+  @Override
+  public void interpret(List<Stmt> statements) {
     try {
       for (Stmt statement : statements) {
         execute(statement);
       }
     } catch (RuntimeError e) {
-      Lox.runtimeError(e);
+      diagnostics.runtimeError(e);
     }
   }
 
@@ -24,19 +107,16 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     stmt.accept(this);
   }
 
-  private String stringify(Object value) {
-    if (value == null) return "nil";
-
-    if (value instanceof Double) {
-      return noTrailingZeroesFormat.format((double) value);
-    }
-
-    return value.toString();
-  }
-
   @Override
   public Void visitBlockStmt(Stmt.Block stmt) {
-    executeBlock(stmt.statements, new Environment(environment));
+    // Blocks without slots of their own run in the enclosing frame
+    if (stmt.slots == 0) {
+      for (Stmt statement : stmt.statements) {
+        execute(statement);
+      }
+    } else {
+      executeBlock(stmt.statements, new Environment(environment, stmt.slots));
+    }
     return null;
   }
 
@@ -56,14 +136,13 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitExpressionStmt(Stmt.Expression stmt) {
-    evaluate(stmt.expression);
+    value(stmt.expression);
     return null;
   }
 
   @Override
   public Void visitPrintStmt(Stmt.Print stmt) {
-    var value = evaluate(stmt.expression);
-    System.out.println(stringify(value));
+    out.print(value(stmt.expression));
     return null;
   }
 
@@ -71,16 +150,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
   public Void visitVarStmt(Stmt.Var stmt) {
     var value = (Object) null;
     if (stmt.initializer != null) {
-      value = evaluate(stmt.initializer);
+      value = value(stmt.initializer);
     }
 
-    environment.define(stmt.name.lexeme, value);
+    if (stmt.depth < 0) {
+      globals.define(stmt.slot, value);
+    } else {
+      environment.define(stmt.slot, value);
+    }
     return null;
   }
 
   @Override
   public Void visitIfStmtStmt(Stmt.IfStmt stmt) {
-    if (isTruthy(evaluate(stmt.condition))) {
+    if (condition(stmt.condition)) {
       execute(stmt.thenBranch);
     } else if (stmt.elseBranch != null) {
       execute(stmt.elseBranch);
@@ -88,22 +171,87 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     return null;
   }
 
+  @Override
+  public Void visitWhileStmt(Stmt.While stmt) {
+    if (hotLoopThreshold == NEVER) {
+      while (condition(stmt.condition)) {
+        execute(stmt.body);
+      }
+      return null;
+    }
+
+    // Counts outlive a single run, so loops nested in other loops get hot too
+    var profile = loops.computeIfAbsent(stmt, loop -> new LoopProfile());
+    while (profile.compiled == null) {
+      if (!condition(stmt.condition)) return null;
+      execute(stmt.body);
+      if (++profile.backEdges >= hotLoopThreshold) {
+        profile.compiled = loopCompiler.compile(stmt, environment == null ? null : environment.values());
+      }
+    }
+
+    // Only a loop at the top level needs locals beyond the frame it's in, for its body's own frame
+    var frame = environment == null ? new Object[profile.compiled.maxLocals()] : environment.values();
+    profile.compiled.loop().execute(frame);
+    return null;
+  }
+
+  CompiledLoop compileToClosures(Stmt.While loop, Object[] frame) {
+    var compiler = new ClosureCompiler(globals, out);
+    var action = compiler.compileLoop(loop, frame == null ? 0 : frame.length);
+    return new CompiledLoop(action, compiler.maxLocals());
+  }
+
+  // Back edges this interpreter counted for the loop, for tests
+  int backEdges(Stmt.While loop) {
+    var profile = loops.get(loop);
+    return profile == null ? 0 : profile.backEdges;
+  }
+
+  boolean isHot(Stmt.While loop) {
+    var profile = loops.get(loop);
+    return profile != null && profile.compiled != null;
+  }
+
+  // Statements evaluate their expressions through these two, the only ones that know about stack mode
+  private Object value(Expr expr) {
+    return stack == null ? evaluate(expr) : stack.evaluate(expr, environment);
+  }
+
+  private boolean condition(Expr expr) {
+    return stack == null ? evaluateBoolean(expr) : isTruthy(stack.evaluate(expr, environment));
+  }
+
   @Override
   public Object visitAssignExpr(Expr.Assign expr) {
     var value = evaluate(expr.value);
-    environment.assign(expr.name, value);
+    if (expr.depth < 0) {
+      globals.assign(expr.slot, expr.name, value);
+    } else {
+      environment.assign(expr.depth, expr.slot, value);
+    }
     return value;
   }
 
   @Override
   public Object visitBinaryExpr(Expr.Binary expr) {
+    // The whole numeric subtree is evaluated unboxed, and boxed just once, here
+    if (expr.numeric) {
+      return evaluateDouble(expr);
+    }
+    switch (expr.operator.type) {
+      case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+      case EQUAL_EQUAL: case BANG_EQUAL:
+        return evaluateBoolean(expr);
+    }
+
     var operator = expr.operator.type;
     var left = evaluate(expr.left);
     var right = evaluate(expr.right);
 //TODO what if types don't agree? just let java throw?
 
-    if (left instanceof String && right instanceof String && operator == PLUS) {
-      return left + (String)right;
+    if (left instanceof CharSequence && right instanceof CharSequence && operator == PLUS) {
+      return concat(left, right);
     }
 
     if (operator == EQUAL_EQUAL) {
@@ -142,14 +290,137 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     if (operand instanceof Double) {
       return (double) operand;
     }
-    var errMsg = "Operand must be a number" + (operator.type == PLUS ? " or a string" : "");
-    throw new RuntimeError(operator, errMsg);
+    throw new RuntimeError(operator, operandError(operator.type == PLUS));
+  }
+
+  /*
+    Unboxed evaluation, for expressions Resolver.isNumeric() vouches for.
+
+    Operands not statically known to be numbers are evaluated the generic way and only
+    type checked once both sides are evaluated, so errors (and assignments made before them)
+    come out exactly as from the generic path.
+   */
+  double evaluateDouble(Expr expr) {
+    if (expr instanceof Expr.Literal) {
+      return (double) ((Expr.Literal) expr).value;
+    }
+    if (expr instanceof Expr.Grouping) {
+      return evaluateDouble(((Expr.Grouping) expr).expression);
+    }
+    if (expr instanceof Expr.Unary) {
+      var unary = (Expr.Unary) expr;
+      return -numericOperand(unary.operator, unary.right);
+    }
+
+    var binary = (Expr.Binary) expr;
+    var operator = binary.operator;
+    double left;
+    double right;
+    if (Resolver.isNumeric(binary.left)) {
+      left = evaluateDouble(binary.left);
+      right = numericOperand(operator, binary.right);
+    } else {
+      var leftValue = evaluate(binary.left);
+      if (Resolver.isNumeric(binary.right)) {
+        right = evaluateDouble(binary.right);
+        left = requireDouble(operator, leftValue);
+      } else {
+        var rightValue = evaluate(binary.right);
+        left = requireDouble(operator, leftValue);
+        right = requireDouble(operator, rightValue);
+      }
+    }
+
+    switch (operator.type) {
+      case MINUS: return left - right;
+      case PLUS: return left + right;
+      case SLASH: return left / right;
+      case STAR: return left * right;
+    }
+    throw new IllegalStateException("Not a numeric operator " + operator.lexeme);
+  }
+
+  private double numericOperand(Token operator, Expr operand) {
+    if (Resolver.isNumeric(operand)) {
+      return evaluateDouble(operand);
+    }
+    return requireDouble(operator, evaluate(operand));
+  }
+
+  // Truthiness of expr, without boxing comparisons, equality or negation on the way
+  boolean evaluateBoolean(Expr expr) {
+    if (expr instanceof Expr.Binary) {
+      var binary = (Expr.Binary) expr;
+      switch (binary.operator.type) {
+        case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+          return compare(binary);
+        case EQUAL_EQUAL:
+          return equal(binary);
+        case BANG_EQUAL:
+          return !equal(binary);
+      }
+    } else if (expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type == BANG) {
+      return !evaluateBoolean(((Expr.Unary) expr).right);
+    } else if (expr instanceof Expr.Grouping) {
+      return evaluateBoolean(((Expr.Grouping) expr).expression);
+    }
+
+    if (Resolver.isNumeric(expr)) {
+      evaluateDouble(expr);
+      return true;
+    }
+    return isTruthy(evaluate(expr));
   }
 
-  private boolean isEqual(Object a, Object b) {
-    if (a == null && b == null) return true;
-    if (a == null) return false;
-    return a.equals(b);
+  private boolean compare(Expr.Binary binary) {
+    var operator = binary.operator;
+    double left;
+    double right;
+    if (Resolver.isNumeric(binary.left)) {
+      left = evaluateDouble(binary.left);
+      right = numericOperand(operator, binary.right);
+    } else {
+      var leftValue = evaluate(binary.left);
+      if (Resolver.isNumeric(binary.right)) {
+        right = evaluateDouble(binary.right);
+        left = requireDouble(operator, leftValue);
+      } else {
+        var rightValue = evaluate(binary.right);
+        left = requireDouble(operator, leftValue);
+        right = requireDouble(operator, rightValue);
+      }
+    }
+
+    switch (operator.type) {
+      case GREATER: return left > right;
+      case GREATER_EQUAL: return left >= right;
+      case LESS: return left < right;
+      case LESS_EQUAL: return left <= right;
+    }
+    throw new IllegalStateException("Not a comparison operator " + operator.lexeme);
+  }
+
+  private boolean equal(Expr.Binary binary) {
+    if (Resolver.isNumeric(binary.left)) {
+      var left = evaluateDouble(binary.left);
+      if (Resolver.isNumeric(binary.right)) {
+        return sameDouble(left, evaluateDouble(binary.right));
+      }
+      var right = evaluate(binary.right);
+      return right instanceof Double && sameDouble(left, (double) right);
+    }
+
+    var left = evaluate(binary.left);
+    if (Resolver.isNumeric(binary.right)) {
+      var right = evaluateDouble(binary.right);
+      return left instanceof Double && sameDouble((double) left, right);
+    }
+    return isEqual(left, evaluate(binary.right));
+  }
+
+  // Same as Double.equals, which is what isEqual ends up calling for numbers
+  private static boolean sameDouble(double a, double b) {
+    return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
   }
 
   @Override
@@ -168,13 +439,11 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Object visitUnaryExpr(Expr.Unary expr) {
-    var right = evaluate(expr.right);
     switch (expr.operator.type) {
       case BANG:
-        return !isTruthy(right);
+        return !evaluateBoolean(expr.right);
       case MINUS:
-        // TODO can the cast fail?
-        return -(double)right;
+        return evaluateDouble(expr);
     }
     // TODO Unreachable?
     return null;
@@ -182,13 +451,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
   @Override
   public Object visitVariableExpr(Expr.Variable expr) {
-    return environment.get(expr.name);
-  }
-
-  // Ruby-style: false and nil are falsy, everything else is truthy
-  private boolean isTruthy(Object o) {
-    if (o == null) return false;
-    if (o instanceof Boolean) return (boolean) o;
-    return true;
+    if (expr.depth < 0) {
+      return globals.get(expr.slot, expr.name);
+    }
+    return environment.get(expr.depth, expr.slot);
   }
 }
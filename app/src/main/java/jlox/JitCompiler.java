@@ -0,0 +1,580 @@
+package jlox;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/*
+    Translates a loop the JitExecutor found hot into Java source, compiles it in memory with
+    the JDK's own compiler and loads the result as a hidden class next to the rest of jlox,
+    so HotSpot can inline and register allocate Lox arithmetic like any other Java code.
+
+    The loop becomes one static method running on the frame the loop is in, with the locals it
+    uses as plain Java locals. Expressions are typed statically: anything known to be a number
+    stays a primitive double, and locals whose every store is a number (or every store a boolean)
+    are declared as primitives too. Frame slots the loop uses but doesn't declare are loaded on
+    entry, their types guessed from what they hold when the loop is compiled, and stored back
+    when it's done. Values only get boxed when they reach the frame, Globals or print.
+ */
+class JitCompiler {
+    static final MethodType loopType =
+            MethodType.methodType(boolean.class, Globals.class, Token[].class, Output.class, Object[].class);
+
+    private static final String className = "JitLoop";
+
+    static class CompiledLoop {
+        private final MethodHandle loop;
+        private final Token[] tokens;
+
+        CompiledLoop(MethodHandle loop, Token[] tokens) {
+            this.loop = loop;
+            this.tokens = tokens;
+        }
+
+        /*
+            Runs the rest of the loop on frame, or returns false without running any of it if
+            the frame holds values of other types than the loop was compiled for.
+         */
+        boolean run(Globals globals, Output out, Object[] frame) {
+            try {
+                return (boolean) loop.invokeExact(globals, tokens, out, frame);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // Generated methods don't throw checked exceptions
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private enum Type { DOUBLE, BOOLEAN, OBJECT }
+
+    private record Code(String text, Type type) {}
+
+    // Tokens the generated code needs for error reporting and global names, passed in as t[]
+    private final List<Token> tokens = new ArrayList<>();
+    private final Map<Token, Integer> tokenIndices = new IdentityHashMap<>();
+
+    /*
+        Compiles a loop about to run on frame, the frame it's in, empty at the top level.
+        Returns null if there's no compiler around (e.g. running on a JRE) or javac rejects
+        the generated class (e.g. a loop too big for one method), in which case the caller
+        should keep interpreting it. The hidden class isn't kept alive by anything but the
+        returned CompiledLoop.
+     */
+    CompiledLoop compileLoop(Stmt.While loop, Object[] frame) {
+        var classBytes = compileSource(generateSource(loop, frame));
+        if (classBytes == null) return null;
+
+        try {
+            var lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+            var method = lookup.findStatic(lookup.lookupClass(), "loop", loopType);
+            return new CompiledLoop(method, tokens.toArray(new Token[0]));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    String generateSource(Stmt.While loop, Object[] frame) {
+        var source = new StringBuilder();
+        source.append("package jlox;\n\n");
+        source.append("final class ").append(className).append(" {\n");
+        new MethodGenerator(loop, frame).generate(source);
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static byte[] compileSource(String source) {
+        var javac = ToolProvider.getSystemJavaCompiler();
+        var classPath = classPath();
+        if (javac == null || classPath == null) return null;
+
+        var sourceFile = new SimpleJavaFileObject(
+                URI.create("string:///jlox/" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        var fileManager = new InMemoryClassFileManager(
+                javac.getStandardFileManager(null, null, StandardCharsets.UTF_8));
+        var options = List.of("-classpath", classPath,
+                "-proc:none", "-g:none", "-nowarn");
+
+        try {
+            var task = javac.getTask(null, fileManager, new DiagnosticCollector<>(), options,
+                    null, List.of(sourceFile));
+            if (!task.call()) return null;
+        } catch (RuntimeException | StackOverflowError e) {
+            // javac itself can give up on very deeply nested expressions
+            return null;
+        }
+        return fileManager.classBytes.toByteArray();
+    }
+
+    // Where the jlox classes generated code calls into were loaded from, null if that's not a path javac can read
+    private static String classPath() {
+        var codeSource = JitRuntime.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) return null;
+        try {
+            return Path.of(codeSource.getLocation().toURI()).toString();
+        } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static class InMemoryClassFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        final ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+
+        InMemoryClassFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("bytes:///" + className + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return classBytes;
+                }
+            };
+        }
+    }
+
+    private String tokenRef(Token token) {
+        var index = tokenIndices.computeIfAbsent(token, t -> {
+            tokens.add(t);
+            return tokens.size() - 1;
+        });
+        return "t[" + index + "]";
+    }
+
+    /*
+        Finds every block local the loop uses and the expressions stored into it. Locals get
+        a flat index from LocalsLayout, the same way the VM lays them out, starting with the slots
+        of the frame the loop is in.
+     */
+    private static class LocalCollector implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+        final Map<Object, Integer> localIndices = new IdentityHashMap<>();
+        // A null entry stands for nil, stored by a declaration without initializer
+        final Map<Integer, List<Expr>> stores = new HashMap<>();
+        // Locals declared in the loop; every other one it uses is live in, set before it started
+        final Set<Integer> declared = new HashSet<>();
+        final LocalsLayout layout = new LocalsLayout();
+
+        private void store(Object node, int index, Expr value) {
+            localIndices.put(node, index);
+            stores.computeIfAbsent(index, i -> new ArrayList<>()).add(value);
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            layout.enterBlock(stmt.slots);
+            for (Stmt statement : stmt.statements) {
+                statement.accept(this);
+            }
+            layout.exitBlock();
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            return stmt.expression.accept(this);
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            return stmt.expression.accept(this);
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            if (stmt.initializer != null) {
+                stmt.initializer.accept(this);
+            }
+            if (stmt.depth >= 0) {
+                store(stmt, layout.index(0, stmt.slot), stmt.initializer);
+                declared.add(layout.index(0, stmt.slot));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmtStmt(Stmt.IfStmt stmt) {
+            stmt.condition.accept(this);
+            stmt.thenBranch.accept(this);
+            if (stmt.elseBranch != null) {
+                stmt.elseBranch.accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            stmt.condition.accept(this);
+            return stmt.body.accept(this);
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            expr.value.accept(this);
+            if (expr.depth >= 0) {
+                store(expr, layout.index(expr.depth, expr.slot), expr.value);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            expr.left.accept(this);
+            return expr.right.accept(this);
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            return expr.right.accept(this);
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            if (expr.depth >= 0) {
+                localIndices.put(expr, layout.index(expr.depth, expr.slot));
+            }
+            return null;
+        }
+    }
+
+    /*
+        Generates the method for one loop. It checks the live in locals still have the types
+        they were compiled for before it loads them, and stores back the ones the loop assigns
+        once it's done; a runtime error ends the program, and with it every use of the frame.
+     */
+    private class MethodGenerator implements Stmt.Visitor<Void>, Expr.Visitor<Code> {
+        private final Stmt.While loop;
+        private final Object[] frame;
+        private final LocalCollector locals = new LocalCollector();
+        private final SortedSet<Integer> liveIn = new TreeSet<>();
+        private Type[] localTypes;
+        private StringBuilder out;
+
+        MethodGenerator(Stmt.While loop, Object[] frame) {
+            this.loop = loop;
+            this.frame = frame;
+        }
+
+        void generate(StringBuilder source) {
+            locals.layout.enterBlock(frame.length);
+            loop.accept(locals);
+            liveIn.addAll(locals.localIndices.values());
+            liveIn.removeAll(locals.declared);
+            inferLocalTypes();
+
+            out = source;
+            out.append("    static boolean loop(Globals g, Token[] t, Output o, Object[] f) {\n");
+            for (int i : liveIn) {
+                if (localTypes[i] != Type.OBJECT) {
+                    out.append("if (!(f[").append(i).append("] instanceof ").append(boxed(localTypes[i]))
+                            .append(")) return false;\n");
+                }
+            }
+            for (int i = 0; i < localTypes.length; i++) {
+                out.append(declaration(localTypes[i], i, liveIn.contains(i))).append(";\n");
+            }
+            loop.accept(this);
+            for (int i : liveIn) {
+                if (locals.stores.containsKey(i)) {
+                    out.append("f[").append(i).append("] = l").append(i).append(";\n");
+                }
+            }
+            out.append("return true;\n");
+            out.append("    }\n");
+        }
+
+        /*
+            Optimistically assumes every local is a double and demotes the ones with a store
+            that isn't, until nothing changes. Then the same for booleans among what's left.
+            A live in local only starts out as the type of the value it has now.
+         */
+        private void inferLocalTypes() {
+            localTypes = new Type[locals.layout.maxLocals()];
+            for (int i = 0; i < localTypes.length; i++) {
+                localTypes[i] = holds(i, Type.DOUBLE) ? Type.DOUBLE : Type.OBJECT;
+            }
+            while (demoteLocals(Type.DOUBLE)) {}
+
+            for (int i = 0; i < localTypes.length; i++) {
+                if (localTypes[i] == Type.OBJECT && holds(i, Type.BOOLEAN)) localTypes[i] = Type.BOOLEAN;
+            }
+            while (demoteLocals(Type.BOOLEAN)) {}
+        }
+
+        private boolean holds(int index, Type type) {
+            if (!liveIn.contains(index)) return true;
+            var value = frame[index];
+            return type == Type.DOUBLE ? value instanceof Double : value instanceof Boolean;
+        }
+
+        private boolean demoteLocals(Type type) {
+            var changed = false;
+            for (var entry : locals.stores.entrySet()) {
+                int index = entry.getKey();
+                if (localTypes[index] != type) continue;
+
+                for (var value : entry.getValue()) {
+                    if (value == null || value.accept(this).type != type) {
+                        localTypes[index] = Type.OBJECT;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            // Slots that are never stored into are never read either, unless they're live in
+            return changed;
+        }
+
+        private String local(Object node) {
+            return "l" + locals.localIndices.get(node);
+        }
+
+        private Type localType(Object node) {
+            return localTypes[locals.localIndices.get(node)];
+        }
+
+        // Helpers are overloaded on double and Object only, booleans go in boxed
+        private String operand(Code code) {
+            return code.type == Type.BOOLEAN ? "((Object) " + code.text + ")" : code.text;
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            out.append("{\n");
+            for (Stmt statement : stmt.statements) {
+                statement.accept(this);
+            }
+            out.append("}\n");
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            out.append("JitRuntime.discard(").append(stmt.expression.accept(this).text).append(");\n");
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            out.append("JitRuntime.print(o, ").append(stmt.expression.accept(this).text).append(");\n");
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            var value = stmt.initializer == null ? "null" : stmt.initializer.accept(this).text;
+            if (stmt.depth < 0) {
+                out.append("g.define(").append(stmt.slot).append(", ")
+                        .append(value).append(");\n");
+            } else {
+                out.append(local(stmt)).append(" = ").append(value).append(";\n");
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmtStmt(Stmt.IfStmt stmt) {
+            out.append("if (JitRuntime.isTruthy(").append(stmt.condition.accept(this).text).append(")) {\n");
+            stmt.thenBranch.accept(this);
+            out.append("}\n");
+            if (stmt.elseBranch != null) {
+                out.append("else {\n");
+                stmt.elseBranch.accept(this);
+                out.append("}\n");
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            out.append("while (JitRuntime.isTruthy(").append(stmt.condition.accept(this).text).append(")) {\n");
+            stmt.body.accept(this);
+            out.append("}\n");
+            return null;
+        }
+
+        @Override
+        public Code visitAssignExpr(Expr.Assign expr) {
+            var value = expr.value.accept(this);
+            if (expr.depth < 0) {
+                var text = "JitRuntime.assignGlobal(g, " + expr.slot + ", " + tokenRef(expr.name) + ", " + value.text + ")";
+                return new Code(text, value.type);
+            }
+            return new Code("(" + local(expr) + " = " + value.text + ")", localType(expr));
+        }
+
+        @Override
+        public Code visitBinaryExpr(Expr.Binary expr) {
+            var left = expr.left.accept(this);
+            var right = expr.right.accept(this);
+            var bothDoubles = left.type == Type.DOUBLE && right.type == Type.DOUBLE;
+
+            switch (expr.operator.type) {
+                case EQUAL_EQUAL:
+                    return new Code("JitRuntime.isEqual(" + left.text + ", " + right.text + ")", Type.BOOLEAN);
+                case BANG_EQUAL:
+                    return new Code("(!JitRuntime.isEqual(" + left.text + ", " + right.text + "))", Type.BOOLEAN);
+                case PLUS:
+                    if (bothDoubles) return primitive(left, "+", right, Type.DOUBLE);
+                    return helper("add", left, right, expr.operator, Type.OBJECT);
+                case MINUS:
+                    if (bothDoubles) return primitive(left, "-", right, Type.DOUBLE);
+                    return helper("subtract", left, right, expr.operator, Type.DOUBLE);
+                case STAR:
+                    if (bothDoubles) return primitive(left, "*", right, Type.DOUBLE);
+                    return helper("multiply", left, right, expr.operator, Type.DOUBLE);
+                case SLASH:
+                    if (bothDoubles) return primitive(left, "/", right, Type.DOUBLE);
+                    return helper("divide", left, right, expr.operator, Type.DOUBLE);
+                case GREATER:
+                    if (bothDoubles) return primitive(left, ">", right, Type.BOOLEAN);
+                    return helper("greater", left, right, expr.operator, Type.BOOLEAN);
+                case GREATER_EQUAL:
+                    if (bothDoubles) return primitive(left, ">=", right, Type.BOOLEAN);
+                    return helper("greaterEqual", left, right, expr.operator, Type.BOOLEAN);
+                case LESS:
+                    if (bothDoubles) return primitive(left, "<", right, Type.BOOLEAN);
+                    return helper("less", left, right, expr.operator, Type.BOOLEAN);
+                case LESS_EQUAL:
+                    if (bothDoubles) return primitive(left, "<=", right, Type.BOOLEAN);
+                    return helper("lessEqual", left, right, expr.operator, Type.BOOLEAN);
+                default:
+                    throw new IllegalStateException("Unsupported binary operator " + expr.operator.lexeme);
+            }
+        }
+
+        private Code primitive(Code left, String operator, Code right, Type type) {
+            return new Code("(" + left.text + " " + operator + " " + right.text + ")", type);
+        }
+
+        // A helper's return type is the node's type: double for -*/, Object for +
+        private Code helper(String name, Code left, Code right, Token operator, Type type) {
+            var text = "JitRuntime." + name + "(" + operand(left) + ", " + operand(right) + ", "
+                    + tokenRef(operator) + ")";
+            // add(Object, Object) is the only overload returning an Object
+            if (name.equals("add") && (left.type == Type.DOUBLE || right.type == Type.DOUBLE)) {
+                type = Type.DOUBLE;
+            }
+            return new Code(text, type);
+        }
+
+        @Override
+        public Code visitGroupingExpr(Expr.Grouping expr) {
+            var inner = expr.expression.accept(this);
+            return new Code("(" + inner.text + ")", inner.type);
+        }
+
+        @Override
+        public Code visitLiteralExpr(Expr.Literal expr) {
+            var value = expr.value;
+            if (value == null) return new Code("((Object) null)", Type.OBJECT);
+            if (value instanceof Boolean) return new Code(value.toString(), Type.BOOLEAN);
+            if (value instanceof Double) return new Code(doubleLiteral((double) value), Type.DOUBLE);
+            return new Code(stringLiteral((String) value), Type.OBJECT);
+        }
+
+        @Override
+        public Code visitUnaryExpr(Expr.Unary expr) {
+            var right = expr.right.accept(this);
+            switch (expr.operator.type) {
+                case BANG:
+                    return new Code("(!JitRuntime.isTruthy(" + right.text + "))", Type.BOOLEAN);
+                case MINUS:
+                    if (right.type == Type.DOUBLE) return new Code("(-" + right.text + ")", Type.DOUBLE);
+                    var text = "(-JitRuntime.number(" + right.text + ", " + tokenRef(expr.operator) + "))";
+                    return new Code(text, Type.DOUBLE);
+                default:
+                    throw new IllegalStateException("Unsupported unary operator " + expr.operator.lexeme);
+            }
+        }
+
+        @Override
+        public Code visitVariableExpr(Expr.Variable expr) {
+            if (expr.depth < 0) {
+                return new Code("g.get(" + expr.slot + ", " + tokenRef(expr.name) + ")", Type.OBJECT);
+            }
+            return new Code(local(expr), localType(expr));
+        }
+    }
+
+    private static String boxed(Type type) {
+        return type == Type.DOUBLE ? "Double" : "Boolean";
+    }
+
+    // A local loaded from the frame, or starting out with its type's default value
+    private static String declaration(Type type, int index, boolean load) {
+        var local = "l" + index;
+        var slot = "f[" + index + "]";
+        switch (type) {
+            case DOUBLE: return "double " + local + " = " + (load ? "(Double) " + slot : "0");
+            case BOOLEAN: return "boolean " + local + " = " + (load ? "(Boolean) " + slot : "false");
+            default: return "Object " + local + " = " + (load ? slot : "null");
+        }
+    }
+
+    private static String doubleLiteral(double value) {
+        // Lox has no exponent syntax, but a long enough digit string still overflows,
+        // and folding by the Optimizer can make any double, -Infinity and NaN included
+        if (Double.isNaN(value)) return "Double.NaN";
+        if (Double.isInfinite(value)) return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        return Double.toString(value);
+    }
+
+    private static String stringLiteral(String value) {
+        var sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7f) {
+                // Octal escapes, as javac would turn a backslash-u escape of a newline into a real one
+                sb.append(String.format("\\%03o", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
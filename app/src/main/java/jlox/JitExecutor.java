@@ -0,0 +1,58 @@
+package jlox;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+    Runs programs in the Interpreter, with the loops it finds hot compiled to JVM bytecode
+    by JitCompiler. Selected with --engine=jit.
+
+    Compiled loops are kept by the engine for as long as the loops themselves, so a program
+    pays for javac once, whichever contexts run it. A loop that can't be compiled, or that's
+    entered with locals of other types than it was compiled for, runs through the ClosureCompiler
+    instead, same as in the Interpreter.
+ */
+class JitExecutor implements Executor {
+    private final Globals globals = new Globals();
+    private final Output out;
+    private final Map<Stmt.While, JitCompiler.CompiledLoop> compiledLoops;
+    private final Interpreter interpreter;
+
+    JitExecutor(Output out, Diagnostics diagnostics, Map<Stmt.While, JitCompiler.CompiledLoop> compiledLoops) {
+        this(out, diagnostics, compiledLoops, Interpreter.HOT_LOOP_THRESHOLD);
+    }
+
+    JitExecutor(Output out, Diagnostics diagnostics, Map<Stmt.While, JitCompiler.CompiledLoop> compiledLoops,
+                int hotLoopThreshold) {
+        this.out = out;
+        this.compiledLoops = compiledLoops;
+        this.interpreter = new Interpreter(globals, out, diagnostics, false, hotLoopThreshold, this::compile);
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        interpreter.interpret(statements);
+    }
+
+    private Interpreter.CompiledLoop compile(Stmt.While loop, Object[] frame) {
+        var closures = interpreter.compileToClosures(loop, frame);
+
+        var compiled = compiledLoops.get(loop);
+        if (compiled == null) {
+            // Compiled outside the map's lock, javac takes a while
+            compiled = new JitCompiler().compileLoop(loop, frame == null ? new Object[0] : frame);
+            if (compiled == null) return closures;
+
+            var raced = compiledLoops.putIfAbsent(loop, compiled);
+            if (raced != null) compiled = raced;
+        }
+
+        var jit = compiled;
+        Action action = f -> {
+            if (!jit.run(globals, out, f)) {
+                closures.loop().execute(f);
+            }
+        };
+        return new Interpreter.CompiledLoop(action, closures.maxLocals());
+    }
+}
@@ -0,0 +1,173 @@
+package jlox;
+
+
+/*
+    Helpers called from classes generated by JitCompiler. The overloads let javac pick
+    a primitive version whenever an operand is statically known to be a double or a boolean,
+    so those never get boxed. Both operands are always evaluated before either is checked,
+    same as in the Interpreter.
+ */
+final class JitRuntime {
+    private JitRuntime() {}
+
+    static double number(Object operand, Token operator) {
+        if (operand instanceof Double) {
+            return (double) operand;
+        }
+        throw new RuntimeError(operator, Values.operandError(operator.type == TokenType.PLUS));
+    }
+
+    static boolean isTruthy(Object value) {
+        return Values.isTruthy(value);
+    }
+
+    static boolean isTruthy(boolean value) {
+        return value;
+    }
+
+    static boolean isTruthy(double value) {
+        return true;
+    }
+
+    // Same as Double.equals, so NaN equals itself and 0 doesn't equal -0
+    static boolean isEqual(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    static boolean isEqual(boolean a, boolean b) {
+        return a == b;
+    }
+
+    static boolean isEqual(Object a, Object b) {
+        return Values.isEqual(a, b);
+    }
+
+    static Object add(Object left, Object right, Token operator) {
+        if (left instanceof CharSequence && right instanceof CharSequence) {
+            return Values.concat(left, right);
+        }
+        return number(left, operator) + number(right, operator);
+    }
+
+    static double add(double left, Object right, Token operator) {
+        return left + number(right, operator);
+    }
+
+    static double add(Object left, double right, Token operator) {
+        return number(left, operator) + right;
+    }
+
+    static double subtract(Object left, Object right, Token operator) {
+        return number(left, operator) - number(right, operator);
+    }
+
+    static double subtract(double left, Object right, Token operator) {
+        return left - number(right, operator);
+    }
+
+    static double subtract(Object left, double right, Token operator) {
+        return number(left, operator) - right;
+    }
+
+    static double multiply(Object left, Object right, Token operator) {
+        return number(left, operator) * number(right, operator);
+    }
+
+    static double multiply(double left, Object right, Token operator) {
+        return left * number(right, operator);
+    }
+
+    static double multiply(Object left, double right, Token operator) {
+        return number(left, operator) * right;
+    }
+
+    static double divide(Object left, Object right, Token operator) {
+        return number(left, operator) / number(right, operator);
+    }
+
+    static double divide(double left, Object right, Token operator) {
+        return left / number(right, operator);
+    }
+
+    static double divide(Object left, double right, Token operator) {
+        return number(left, operator) / right;
+    }
+
+    static boolean greater(Object left, Object right, Token operator) {
+        return number(left, operator) > number(right, operator);
+    }
+
+    static boolean greater(double left, Object right, Token operator) {
+        return left > number(right, operator);
+    }
+
+    static boolean greater(Object left, double right, Token operator) {
+        return number(left, operator) > right;
+    }
+
+    static boolean greaterEqual(Object left, Object right, Token operator) {
+        return number(left, operator) >= number(right, operator);
+    }
+
+    static boolean greaterEqual(double left, Object right, Token operator) {
+        return left >= number(right, operator);
+    }
+
+    static boolean greaterEqual(Object left, double right, Token operator) {
+        return number(left, operator) >= right;
+    }
+
+    static boolean less(Object left, Object right, Token operator) {
+        return number(left, operator) < number(right, operator);
+    }
+
+    static boolean less(double left, Object right, Token operator) {
+        return left < number(right, operator);
+    }
+
+    static boolean less(Object left, double right, Token operator) {
+        return number(left, operator) < right;
+    }
+
+    static boolean lessEqual(Object left, Object right, Token operator) {
+        return number(left, operator) <= number(right, operator);
+    }
+
+    static boolean lessEqual(double left, Object right, Token operator) {
+        return left <= number(right, operator);
+    }
+
+    static boolean lessEqual(Object left, double right, Token operator) {
+        return number(left, operator) <= right;
+    }
+
+    static Object assignGlobal(Globals globals, int slot, Token name, Object value) {
+        globals.assign(slot, name, value);
+        return value;
+    }
+
+    static double assignGlobal(Globals globals, int slot, Token name, double value) {
+        globals.assign(slot, name, value);
+        return value;
+    }
+
+    static boolean assignGlobal(Globals globals, int slot, Token name, boolean value) {
+        globals.assign(slot, name, value);
+        return value;
+    }
+
+    static void print(Output out, Object value) {
+        out.print(value);
+    }
+
+    static void print(Output out, double value) {
+        out.print(value);
+    }
+
+    // Expression statements still have to be evaluated, for their errors and assignments
+    static void discard(Object value) {}
+
+    static void discard(double value) {}
+
+    static void discard(boolean value) {}
+}
@@ -0,0 +1,44 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Lays out the block locals of a resolved program in one flat array, for engines that don't
+    allocate an Environment per block. There are no functions, so a block's frame can simply
+    start where its enclosing block's frame ends, and a resolved (depth, slot) pair becomes
+    a fixed index. Blocks the Resolver left without slots run in their enclosing frame,
+    so they don't start one.
+ */
+class LocalsLayout {
+    // Where each enclosing frame starts, innermost last
+    private final List<Integer> frameBases = new ArrayList<>();
+    // Whether each enclosing block started a frame, innermost last
+    private final List<Boolean> startedFrame = new ArrayList<>();
+    private int top = 0;
+    private int maxLocals = 0;
+
+    void enterBlock(int slots) {
+        startedFrame.add(slots > 0);
+        if (slots > 0) {
+            frameBases.add(top);
+            top += slots;
+            maxLocals = Math.max(maxLocals, top);
+        }
+    }
+
+    void exitBlock() {
+        if (startedFrame.remove(startedFrame.size() - 1)) {
+            top = frameBases.remove(frameBases.size() - 1);
+        }
+    }
+
+    int index(int depth, int slot) {
+        return frameBases.get(frameBases.size() - 1 - depth) + slot;
+    }
+
+    // Size of the array needed to hold every local seen so far
+    int maxLocals() {
+        return maxLocals;
+    }
+}
@@ -4,9 +4,10 @@
 package jlox;
 
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -20,52 +21,84 @@ import java.nio.file.Paths;
 
  */
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
-    static PrintStream err = System.err;
-
-    public static void main1(String[] args) throws IOException {
-        var argCount = args.length;
-
-        if (argCount > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(Sysexits.EX_USAGE);
-        } else if (argCount == 1) {
-            runScript(args[0]);
+    private static LoxEngine.Kind engine = LoxEngine.Kind.TREE;
+    private static boolean optimize = false;
+    private static boolean streaming = false;
+    private static Path cacheDirectory = null;
+    private static LoxContext context = new LoxEngine().newContext(System.out, System.err);
+
+    public static void main(String[] args) throws IOException {
+        String script = null;
+
+        for (var arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engine = engineKind(arg.substring("--engine=".length()));
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--stream")) {
+                streaming = true;
+            } else if (arg.equals("--cache")) {
+                cacheDirectory = Paths.get(System.getProperty("user.home"), ".cache", "jlox");
+            } else if (arg.startsWith("--cache=")) {
+                cacheDirectory = Paths.get(arg.substring("--cache=".length()));
+            } else if (script == null && !arg.startsWith("--")) {
+                script = arg;
+            } else {
+                usage();
+            }
+        }
+
+        // A script's output goes straight to the stdout file descriptor, bypassing System.out
+        var out = script != null
+                ? Output.of(new FileOutputStream(FileDescriptor.out).getChannel(), Charset.defaultCharset())
+                : Output.of(System.out);
+        context = new LoxEngine(engine, optimize, cacheDirectory).newContext(out, System.err);
+        if (script != null) {
+            runScript(script);
         } else {
             runPrompt();
         }
     }
 
-    public static void main(String[] args) throws IOException {
-        //runScript("C:\\stuff\\java\\jlox\\app\\src\\test.lox");
-        runScript("/Users/pafau/IdeaProjects/jlox/app/src/test.lox");
+    private static LoxEngine.Kind engineKind(String engine) {
+        switch (engine) {
+            case "tree": return LoxEngine.Kind.TREE;
+            case "stack": return LoxEngine.Kind.STACK;
+            case "vm": return LoxEngine.Kind.VM;
+            case "jit": return LoxEngine.Kind.JIT;
+            case "closure": return LoxEngine.Kind.CLOSURE;
+            case "flat": return LoxEngine.Kind.FLAT;
+            default:
+                usage();
+                return null;
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: jlox [--engine=tree|stack|vm|jit|closure|flat] [--optimize] [--stream] [--cache[=dir]] [script]");
+        System.exit(Sysexits.EX_USAGE);
     }
 
     static void runScript(String fileName) throws IOException {
         Path scriptPath = getScriptPath(fileName);
-        String scriptContents = Files.readString(scriptPath, Charset.defaultCharset());
+        if (streaming) {
+            context.runStreaming(Files.readString(scriptPath, Charset.defaultCharset()));
+        } else {
+            context.runFile(scriptPath);
+        }
 
-        run(scriptContents);
-        if (hadError) System.exit(Sysexits.EX_DATAERR);
-        if (hadRuntimeError) System.exit(Sysexits.EX_SOFTWARE);
+        // The context has written out all output by now, nothing is lost on exit
+        if (context.hadError()) System.exit(Sysexits.EX_DATAERR);
+        if (context.hadRuntimeError()) System.exit(Sysexits.EX_SOFTWARE);
     }
 
     static void run(String loxSource) {
         System.out.println("source: " + loxSource);
-        var scanner = new Scanner(loxSource);
-        var tokens = scanner.scanTokens();
-        var parser = new Parser(tokens);
-        var program = parser.parse();
-
-        if (hadError) return;
-
-        interpreter.interpret(program);
-
-//        for (var token : tokens) {
-//            System.out.println(token);
-//        }
+        if (streaming) {
+            context.runStreaming(loxSource);
+        } else {
+            context.run(loxSource);
+        }
     }
 
     private static Path getScriptPath(String fileName) {
@@ -82,32 +115,6 @@ public class Lox {
         }
     }
 
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
-        }
-    }
-
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    static void runtimeError(RuntimeError e) {
-        err.println(e.getMessage() + "\n[line " + e.token.line + "]");
-        hadRuntimeError = true;
-    }
-
-    private static void report(int line, String where, String message) {
-        err.printf("[line %s] Error%s: %s\n", line, where, message);
-        hadError = true;
-    }
-
-    static void setErr(PrintStream err) {
-        Lox.err = err;
-    }
-
     static void runPrompt() throws IOException {
         var isr = new InputStreamReader(System.in);
         var reader = new BufferedReader(isr);
@@ -121,7 +128,6 @@ public class Lox {
                 break;
             }
             run(line);
-            hadError = false;
         }
     }
 }
@@ -0,0 +1,85 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/*
+    One isolated Lox session, with its own globals, output and errors. Like the prompt,
+    it keeps its globals from one run to the next. Printed output is buffered, and all of it
+    is written out by the time a run returns, or throws.
+
+    A context is meant for one thread at a time. Scripts run concurrently each get a context
+    of their own; contexts share nothing but the engine that created them and,
+    if they want to, programs compiled once.
+ */
+public final class LoxContext {
+    private final LoxEngine engine;
+    private final Output out;
+    private final Diagnostics diagnostics;
+    private final Executor executor;
+
+    LoxContext(LoxEngine engine, Output out, Diagnostics diagnostics) {
+        this.engine = engine;
+        this.out = out;
+        this.diagnostics = diagnostics;
+        this.executor = engine.newExecutor(out, diagnostics);
+    }
+
+    public void run(String source) {
+        var program = compile(source);
+        if (program != null) {
+            execute(program);
+        }
+    }
+
+    // Like run, for a UTF-8 script file, which is scanned from a memory mapping without being decoded first
+    public void runFile(Path script) throws IOException {
+        diagnostics.reset();
+        var program = engine.compile(ByteScanner.map(script), diagnostics);
+        if (program != null) {
+            execute(program);
+        }
+    }
+
+    /*
+        Like run, but executes each top level declaration as soon as it's parsed, while the rest
+        of source is still being scanned and parsed on another thread. Only declarations before
+        the first scan or parse error are executed, as run would execute none of them.
+     */
+    public void runStreaming(String source) {
+        diagnostics.reset();
+        try {
+            Pipeline.run(source, engine, executor, diagnostics);
+        } finally {
+            out.flush();
+        }
+    }
+
+    // Null if source has errors, which are reported to this context's err
+    public LoxProgram compile(String source) {
+        diagnostics.reset();
+        return engine.compile(source, diagnostics);
+    }
+
+    public void execute(LoxProgram program) {
+        if (!engine.compiled(program)) {
+            throw new IllegalArgumentException("The program was compiled by another engine");
+        }
+        diagnostics.reset();
+        try {
+            executor.interpret(program.statements);
+        } finally {
+            out.flush();
+        }
+    }
+
+    // Whether the last compile, or run, reported an error
+    public boolean hadError() {
+        return diagnostics.hadError();
+    }
+
+    // Whether the last execute, or run, stopped on a runtime error
+    public boolean hadRuntimeError() {
+        return diagnostics.hadRuntimeError();
+    }
+}
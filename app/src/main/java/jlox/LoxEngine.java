@@ -0,0 +1,116 @@
+package jlox;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/*
+    Entry point for running Lox embedded in another program.
+
+    An engine is mostly configuration: which execution engine its contexts use, whether
+    programs get optimized, and where parsed scripts are cached, if anywhere. The only state
+    it holds is the slots of the global names its programs use, given out by the Resolver
+    and shared by all of its programs, so that globals defined by one program are where
+    the next one looks for them, and for the JIT, the code compiled for their hot loops,
+    kept as long as the programs are. A single engine can be shared by every thread,
+    compiling programs and creating contexts for all of them.
+ */
+public final class LoxEngine {
+    public enum Kind { TREE, STACK, VM, JIT, CLOSURE, FLAT }
+
+    private final Kind kind;
+    private final boolean optimize;
+    private final ParseCache cache;
+    private final GlobalSlots globalSlots = new GlobalSlots();
+    // Weak keys, compared by identity, as statements don't override equals
+    private final Map<Stmt.While, JitCompiler.CompiledLoop> compiledLoops =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    public LoxEngine() {
+        this(Kind.TREE, false);
+    }
+
+    public LoxEngine(Kind kind, boolean optimize) {
+        this(kind, optimize, null);
+    }
+
+    // Script files run through this engine get their parsed programs cached in cacheDirectory, unless it's null
+    public LoxEngine(Kind kind, boolean optimize, Path cacheDirectory) {
+        this.kind = kind;
+        this.optimize = optimize;
+        this.cache = cacheDirectory == null ? null : new ParseCache(cacheDirectory);
+    }
+
+    // A fresh context with globals of its own, printing to out and reporting errors to err
+    public LoxContext newContext(PrintStream out, PrintStream err) {
+        return newContext(Output.of(out), err);
+    }
+
+    // Same, with control over how printed output is buffered and where it's written
+    public LoxContext newContext(Output out, PrintStream err) {
+        return new LoxContext(this, out, new Diagnostics(err, out));
+    }
+
+    /*
+        Scans, parses and resolves source; null if diagnostics got any errors.
+        Tokens are scanned as the parser consumes them, so they never all exist at once.
+     */
+    LoxProgram compile(String source, Diagnostics diagnostics) {
+        var tokens = new Scanner(source, diagnostics).stream();
+        var statements = new Parser(tokens, diagnostics).parse();
+        if (diagnostics.hadError()) return null;
+
+        return new LoxProgram(prepare(statements), globalSlots);
+    }
+
+    /*
+        Same, for UTF-8 source scanned straight from its bytes, or read from the parse cache
+        if there is one. Only programs without errors are cached, so a hit never has any.
+     */
+    LoxProgram compile(ByteBuffer source, Diagnostics diagnostics) {
+        var entry = cache == null ? null : cache.entry(source);
+        var statements = entry == null ? null : cache.load(entry);
+
+        if (statements == null) {
+            var tokens = new ByteScanner(source, diagnostics).scan();
+            statements = new Parser(tokens, diagnostics).parse();
+            if (diagnostics.hadError()) return null;
+
+            if (entry != null) {
+                cache.store(entry, statements);
+            }
+        }
+        return new LoxProgram(prepare(statements), globalSlots);
+    }
+
+    /*
+        Optimizes, if asked to, and resolves parsed top level statements. Both passes only look
+        at what they are given, so a program can also be prepared a few statements at a time.
+     */
+    List<Stmt> prepare(List<Stmt> statements) {
+        if (optimize) {
+            statements = new Optimizer().optimize(statements);
+        }
+        new Resolver(globalSlots).resolve(statements);
+        return statements;
+    }
+
+    boolean compiled(LoxProgram program) {
+        return program.globalSlots == globalSlots;
+    }
+
+    Executor newExecutor(Output out, Diagnostics diagnostics) {
+        switch (kind) {
+            case STACK: return new Interpreter(new Globals(), out, diagnostics, true);
+            case VM: return new VM(out, diagnostics);
+            case JIT: return new JitExecutor(out, diagnostics, compiledLoops);
+            case CLOSURE: return new ClosureExecutor(out, diagnostics);
+            case FLAT: return new FlatInterpreter(out, diagnostics);
+            default: return new Interpreter(out, diagnostics);
+        }
+    }
+}
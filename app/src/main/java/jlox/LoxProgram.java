@@ -0,0 +1,22 @@
+package jlox;
+
+import java.util.List;
+
+/*
+    A scanned, parsed and resolved program, ready to be executed by any context of the engine
+    that compiled it.
+
+    Engines only ever read the tree once the Resolver is done with it, and it is resolved
+    before being published through the final field here, so a program can be compiled once
+    and then executed by any number of contexts at the same time. The slots its globals got
+    are the compiling engine's, so contexts of other engines can't run it.
+ */
+public final class LoxProgram {
+    final List<Stmt> statements;
+    final GlobalSlots globalSlots;
+
+    LoxProgram(List<Stmt> statements, GlobalSlots globalSlots) {
+        this.statements = List.copyOf(statements);
+        this.globalSlots = globalSlots;
+    }
+}
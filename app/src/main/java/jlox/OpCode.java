@@ -0,0 +1,43 @@
+package jlox;
+
+/*
+    Instruction set of the bytecode VM. Operands follow the opcode in the code array,
+    all of them two bytes wide, big-endian:
+
+        CONSTANT               index into the chunk's constant pool
+        DEFINE_GLOBAL          slot in Globals
+        GET_GLOBAL, SET_GLOBAL slot in Globals, then the name's index into the constant pool
+        *_LOCAL                slot in the VM's flat locals array
+        JUMP, JUMP_IF_FALSE    forward offset from the end of the instruction
+        LOOP                   backward offset from the end of the instruction
+ */
+final class OpCode {
+    static final byte CONSTANT = 0;
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte POP = 4;
+    static final byte GET_LOCAL = 5;
+    static final byte SET_LOCAL = 6;
+    static final byte DEFINE_GLOBAL = 7;
+    static final byte GET_GLOBAL = 8;
+    static final byte SET_GLOBAL = 9;
+    static final byte EQUAL = 10;
+    static final byte GREATER = 11;
+    static final byte GREATER_EQUAL = 12;
+    static final byte LESS = 13;
+    static final byte LESS_EQUAL = 14;
+    static final byte ADD = 15;
+    static final byte SUBTRACT = 16;
+    static final byte MULTIPLY = 17;
+    static final byte DIVIDE = 18;
+    static final byte NOT = 19;
+    static final byte NEGATE = 20;
+    static final byte PRINT = 21;
+    static final byte JUMP = 22;
+    static final byte JUMP_IF_FALSE = 23;
+    static final byte RETURN = 24;
+    static final byte LOOP = 25;
+
+    private OpCode() {}
+}
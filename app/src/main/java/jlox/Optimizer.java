@@ -0,0 +1,319 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/*
+    Optional pass between parsing and resolving, enabled with --optimize. Builds a new tree in which
+
+    - operators applied to literals are replaced by the literal they evaluate to,
+    - groupings are gone, as they only mattered to the parser,
+    - reads of variables that are initialized with a literal and never assigned are replaced by that literal,
+    - if statements with a literal condition are replaced by the branch that would run,
+    - while loops whose condition is a falsey literal are dropped.
+
+    Folding goes through the Interpreter itself, so a folded value is exactly what evaluating
+    the node would have produced. Anything that fails to evaluate, like -"str", is left
+    in the tree to fail at run time, with the same message and line as without the pass.
+
+    Propagation relies on statements running in order: a read is only replaced if it comes after
+    the declaration it refers to, and a variable assigned anywhere in its scope is never replaced.
+    Declarations themselves are kept, so later REPL lines still see their globals.
+
+    Expressions are rebuilt in post-order without recursion: each visit pops its already
+    optimized children off a stack and pushes what it makes of them.
+ */
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    private final Interpreter folder = new Interpreter();
+
+    // Declarations that some assignment refers to; filled in before the tree is rebuilt
+    private Set<Stmt.Var> assigned;
+
+    // Innermost scope last; each maps a name to its constant value, or to null if it isn't constant
+    private final List<Map<String, Expr.Literal>> scopes = new ArrayList<>();
+    private final Map<String, Expr.Literal> globals = new HashMap<>();
+
+    private final PostOrder postOrder = new PostOrder();
+    private final List<Expr> optimized = new ArrayList<>();
+    private final Consumer<Expr> visit = expr -> optimized.add(expr.accept(this));
+
+    List<Stmt> optimize(List<Stmt> statements) {
+        assigned = new AssignmentScan().scan(statements);
+        return optimizeAll(statements);
+    }
+
+    private List<Stmt> optimizeAll(List<Stmt> statements) {
+        var optimized = new ArrayList<Stmt>(statements.size());
+        for (Stmt statement : statements) {
+            var result = optimize(statement);
+            // An if statement or loop that can never run anything leaves nothing behind
+            if (result != null) {
+                optimized.add(result);
+            }
+        }
+        return optimized;
+    }
+
+    private Stmt optimize(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    private Expr optimize(Expr expr) {
+        postOrder.walk(expr, visit);
+        return pop();
+    }
+
+    private Expr pop() {
+        return optimized.remove(optimized.size() - 1);
+    }
+
+    // A branch has to stay a statement, so a pruned one becomes an empty block
+    private Stmt optimizeBranch(Stmt stmt) {
+        var result = optimize(stmt);
+        return result != null ? result : new Stmt.Block(new ArrayList<>());
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        scopes.add(new HashMap<>());
+        var statements = optimizeAll(stmt.statements);
+        scopes.remove(scopes.size() - 1);
+        return new Stmt.Block(statements);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        return new Stmt.Expression(optimize(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        return new Stmt.Print(optimize(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        var initializer = stmt.initializer == null ? null : optimize(stmt.initializer);
+
+        Expr.Literal constant = null;
+        if (!assigned.contains(stmt)) {
+            // An uninitialized variable is nil for as long as nobody assigns it
+            constant = initializer == null ? new Expr.Literal(null)
+                    : initializer instanceof Expr.Literal ? (Expr.Literal) initializer : null;
+        }
+        var scope = scopes.isEmpty() ? globals : scopes.get(scopes.size() - 1);
+        scope.put(stmt.name.lexeme, constant);
+
+        return new Stmt.Var(stmt.name, initializer);
+    }
+
+    @Override
+    public Stmt visitIfStmtStmt(Stmt.IfStmt stmt) {
+        var condition = optimize(stmt.condition);
+
+        if (condition instanceof Expr.Literal) {
+            if (Values.isTruthy(((Expr.Literal) condition).value)) {
+                return optimize(stmt.thenBranch);
+            }
+            return stmt.elseBranch == null ? null : optimize(stmt.elseBranch);
+        }
+
+        var thenBranch = optimizeBranch(stmt.thenBranch);
+        var elseBranch = stmt.elseBranch == null ? null : optimizeBranch(stmt.elseBranch);
+        return new Stmt.IfStmt(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        var condition = optimize(stmt.condition);
+        if (condition instanceof Expr.Literal && !Values.isTruthy(((Expr.Literal) condition).value)) {
+            return null;
+        }
+        return new Stmt.While(condition, optimizeBranch(stmt.body));
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        return new Expr.Assign(expr.name, pop());
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        var right = pop();
+        var left = pop();
+        return fold(new Expr.Binary(left, expr.operator, right));
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return pop();
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        return fold(new Expr.Unary(expr.operator, pop()));
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        var name = expr.name.lexeme;
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            var scope = scopes.get(i);
+            if (scope.containsKey(name)) {
+                return constantOr(scope.get(name), expr);
+            }
+        }
+        return constantOr(globals.get(name), expr);
+    }
+
+    private static Expr constantOr(Expr.Literal constant, Expr.Variable expr) {
+        return constant != null ? new Expr.Literal(constant.value) : expr;
+    }
+
+    // Operands are already folded, so it's enough to look one level down
+    private Expr fold(Expr expr) {
+        if (!(expr instanceof Expr.Binary && isLiteral(((Expr.Binary) expr).left) && isLiteral(((Expr.Binary) expr).right))
+                && !(expr instanceof Expr.Unary && isLiteral(((Expr.Unary) expr).right))) {
+            return expr;
+        }
+
+        try {
+            var value = expr.accept(folder);
+            // A folded constant can end up in programs shared between contexts, ropes can't be shared
+            if (value instanceof Rope) {
+                value = value.toString();
+            }
+            return new Expr.Literal(value);
+        } catch (RuntimeError error) {
+            return expr;
+        }
+    }
+
+    private static boolean isLiteral(Expr expr) {
+        return expr instanceof Expr.Literal;
+    }
+
+    /*
+        Finds the declarations assignments refer to, scoping names the same way the Resolver does,
+        with globals resolved to the latest top level declaration before the assignment.
+        Expressions are walked in post-order, like the Resolver walks them.
+     */
+    private static class AssignmentScan implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+        private final Set<Stmt.Var> assigned = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Map<String, Stmt.Var>> scopes = new ArrayList<>();
+        private final Map<String, Stmt.Var> globals = new HashMap<>();
+        private final PostOrder postOrder = new PostOrder();
+        private final Consumer<Expr> visit = expr -> expr.accept(this);
+
+        Set<Stmt.Var> scan(List<Stmt> statements) {
+            for (Stmt statement : statements) {
+                statement.accept(this);
+            }
+            return assigned;
+        }
+
+        private void scan(Expr expr) {
+            postOrder.walk(expr, visit);
+        }
+
+        @Override
+        public Void visitBlockStmt(Stmt.Block stmt) {
+            scopes.add(new HashMap<>());
+            scan(stmt.statements);
+            scopes.remove(scopes.size() - 1);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Stmt.Expression stmt) {
+            scan(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Stmt.Print stmt) {
+            scan(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Stmt.Var stmt) {
+            if (stmt.initializer != null) {
+                scan(stmt.initializer);
+            }
+            var scope = scopes.isEmpty() ? globals : scopes.get(scopes.size() - 1);
+            scope.put(stmt.name.lexeme, stmt);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmtStmt(Stmt.IfStmt stmt) {
+            scan(stmt.condition);
+            stmt.thenBranch.accept(this);
+            if (stmt.elseBranch != null) {
+                stmt.elseBranch.accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(Stmt.While stmt) {
+            scan(stmt.condition);
+            stmt.body.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Expr.Assign expr) {
+            var name = expr.name.lexeme;
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                var declaration = scopes.get(i).get(name);
+                if (declaration != null) {
+                    assigned.add(declaration);
+                    return null;
+                }
+            }
+            var global = globals.get(name);
+            if (global != null) {
+                assigned.add(global);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Expr.Variable expr) {
+            return null;
+        }
+    }
+}
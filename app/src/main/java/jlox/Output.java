@@ -0,0 +1,226 @@
+package jlox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Where print statements go. Printed lines collect in a buffer, which is written out
+    in one piece when it fills up, when the oldest line in it has waited longer than
+    the policy allows, and whenever the context finishes a run or reports an error,
+    so output always comes before the error that followed it.
+
+    Writes go either to a PrintStream, one print call per buffer full, or straight to a
+    FileChannel, encoded into a direct buffer and bypassing PrintStream altogether.
+
+    An output belongs to one context, and like it, to one thread at a time. The one exception
+    is the timer writing out lines that waited too long, while the program is busy computing
+    rather than printing; outputs with a delay lock their buffer for that, the others don't.
+ */
+public abstract class Output {
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final StringBuilder buffer;
+    private final int capacity;
+    // -1 if the time lines wait isn't limited
+    private final long maxDelayNanos;
+    // Of the oldest unwritten line, and whether the timer is going to look at it; guarded by buffer
+    private long bufferedSince;
+    private boolean flushScheduled = false;
+
+    private Output(int capacity, Duration maxDelay) {
+        this.capacity = capacity;
+        this.buffer = new StringBuilder(capacity + 128);
+        this.maxDelayNanos = maxDelay == null ? -1 : maxDelay.toNanos();
+    }
+
+    public static Output of(PrintStream stream) {
+        return of(stream, DEFAULT_CAPACITY, null);
+    }
+
+    /*
+        Writes once capacity chars are buffered, or once the first unwritten line is maxDelay
+        old, printing more or not, unless maxDelay is null. A capacity of 0 writes every line.
+     */
+    public static Output of(PrintStream stream, int capacity, Duration maxDelay) {
+        return new StreamOutput(stream, capacity, maxDelay);
+    }
+
+    public static Output of(FileChannel channel, Charset charset) {
+        return of(channel, charset, DEFAULT_CAPACITY, null);
+    }
+
+    public static Output of(FileChannel channel, Charset charset, int capacity, Duration maxDelay) {
+        return new ChannelOutput(channel, charset, capacity, maxDelay);
+    }
+
+    void print(Object value) {
+        if (maxDelayNanos < 0) {
+            append(value);
+        } else {
+            synchronized (buffer) {
+                append(value);
+            }
+        }
+    }
+
+    // For engines that keep numbers unboxed
+    void print(double value) {
+        if (maxDelayNanos < 0) {
+            append(value);
+        } else {
+            synchronized (buffer) {
+                append(value);
+            }
+        }
+    }
+
+    private void append(Object value) {
+        var wasEmpty = buffer.length() == 0;
+        if (value instanceof Double) {
+            DoubleFormatter.format((double) value, buffer);
+        } else {
+            buffer.append(Values.stringify(value));
+        }
+        endLine(wasEmpty);
+    }
+
+    private void append(double value) {
+        var wasEmpty = buffer.length() == 0;
+        DoubleFormatter.format(value, buffer);
+        endLine(wasEmpty);
+    }
+
+    private void endLine(boolean wasEmpty) {
+        buffer.append('\n');
+        if (buffer.length() >= capacity) {
+            writeBuffer();
+        } else if (wasEmpty && maxDelayNanos >= 0) {
+            bufferedSince = System.nanoTime();
+            if (!flushScheduled) {
+                flushScheduled = true;
+                Timer.schedule(this::flushIfLate, maxDelayNanos);
+            }
+        }
+    }
+
+    // Writes out whatever is buffered
+    public void flush() {
+        if (maxDelayNanos < 0) {
+            writeBuffer();
+        } else {
+            synchronized (buffer) {
+                writeBuffer();
+            }
+        }
+    }
+
+    /*
+        Run by the timer. Lines may have been written, and new ones buffered, since it was
+        scheduled, in which case it looks again once the oldest of those is due.
+     */
+    private void flushIfLate() {
+        synchronized (buffer) {
+            flushScheduled = false;
+            if (buffer.length() == 0) return;
+
+            var waited = System.nanoTime() - bufferedSince;
+            if (waited >= maxDelayNanos) {
+                writeBuffer();
+            } else {
+                flushScheduled = true;
+                Timer.schedule(this::flushIfLate, maxDelayNanos - waited);
+            }
+        }
+    }
+
+    private void writeBuffer() {
+        if (buffer.length() == 0) return;
+        try {
+            write(buffer);
+        } finally {
+            buffer.setLength(0);
+        }
+    }
+
+    abstract void write(StringBuilder chars);
+
+    // One daemon thread for every output with a delay, started with the first of them
+    private static final class Timer {
+        private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "lox-output-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static void schedule(Runnable task, long delayNanos) {
+            executor.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class StreamOutput extends Output {
+        private final PrintStream stream;
+
+        StreamOutput(PrintStream stream, int capacity, Duration maxDelay) {
+            super(capacity, maxDelay);
+            this.stream = stream;
+        }
+
+        @Override
+        void write(StringBuilder chars) {
+            stream.append(chars);
+            stream.flush();
+        }
+    }
+
+    private static final class ChannelOutput extends Output {
+        private final FileChannel channel;
+        private final CharsetEncoder encoder;
+        private final ByteBuffer bytes;
+
+        ChannelOutput(FileChannel channel, Charset charset, int capacity, Duration maxDelay) {
+            super(capacity, maxDelay);
+            this.channel = channel;
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.bytes = ByteBuffer.allocateDirect(Math.max(1024, (int) (capacity * encoder.maxBytesPerChar())));
+        }
+
+        @Override
+        void write(StringBuilder chars) {
+            var in = CharBuffer.wrap(chars);
+            encoder.reset();
+            try {
+                // A line longer than the capacity takes more than one buffer full
+                while (encoder.encode(in, bytes, true).isOverflow()) {
+                    drain();
+                }
+                while (encoder.flush(bytes).isOverflow()) {
+                    drain();
+                }
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+    Scans a large source on several cores, producing exactly the tokens and errors the Scanner would.
+
+    The source is cut into chunks right after newlines. Nothing in Lox carries over a newline
+    except a string literal (comments end at one), so a chunk can only start in one of two states:
+    normally, or inside a string that began in some earlier chunk. Which one isn't known until
+    everything before the chunk is scanned, so every chunk but the first is scanned both ways at once,
+    and the merge, going through the chunks in order, keeps whichever matches how the previous one ended.
+
+    Chunks count lines from 1 and report errors to their own recorder; the merge moves both
+    to where they really are, and replays the errors in order. Every chunk also interns identifiers
+    in its own table, so the merged names are interned once more, into a single one.
+ */
+class ParallelScanner {
+    static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    private final String source;
+    private final Diagnostics diagnostics;
+    private final int chunkSize;
+
+    ParallelScanner(String source, Diagnostics diagnostics) {
+        this(source, diagnostics, DEFAULT_CHUNK_SIZE);
+    }
+
+    ParallelScanner(String source, Diagnostics diagnostics, int chunkSize) {
+        this.source = source;
+        this.diagnostics = diagnostics;
+        this.chunkSize = chunkSize;
+    }
+
+    TokenBuffer scan() {
+        var bounds = chunkBounds();
+        if (bounds.size() == 2) {
+            return new Scanner(source, diagnostics).scan();
+        }
+
+        var tasks = new ArrayList<Callable<Chunk>>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            int from = bounds.get(i);
+            int to = bounds.get(i + 1);
+            tasks.add(() -> scanChunk(from, to));
+            if (i > 0) {
+                tasks.add(() -> scanChunkInString(from, to));
+            }
+        }
+        return merge(ForkJoinPool.commonPool().invokeAll(tasks));
+    }
+
+    // Chunk starts, plus the end of source; every start but the first comes right after a newline
+    private List<Integer> chunkBounds() {
+        var bounds = new ArrayList<Integer>();
+        bounds.add(0);
+        var next = chunkSize;
+        while (next < source.length()) {
+            var newline = source.indexOf('\n', next - 1);
+            if (newline < 0 || newline + 1 >= source.length()) break;
+
+            bounds.add(newline + 1);
+            next = newline + 1 + chunkSize;
+        }
+        bounds.add(source.length());
+        return bounds;
+    }
+
+    // What scanning one chunk from one of its possible starting states produced
+    private static class Chunk {
+        // Newlines in the whole chunk
+        int newlines;
+        // When starting inside a string: just past its closing quote, -1 if it doesn't close here
+        int closesAt = -1;
+        // Newlines before closesAt, which is where the rest of the chunk starts counting lines
+        int newlinesBeforeClose;
+        // Scanned after the string closed, if it did; always the case when starting normally
+        TokenBuffer tokens;
+        RecordedErrors errors;
+        int openStringStart = -1;
+    }
+
+    private Chunk scanChunk(int from, int to) {
+        var chunk = new Chunk();
+        chunk.newlines = countNewlines(from, to);
+        scanNormally(chunk, from, to);
+        return chunk;
+    }
+
+    private Chunk scanChunkInString(int from, int to) {
+        var chunk = new Chunk();
+        chunk.newlines = countNewlines(from, to);
+
+        // Lox strings have no escapes, so the first quote closes the string
+        var quote = source.indexOf('"', from);
+        if (quote < 0 || quote >= to) {
+            return chunk;
+        }
+        chunk.closesAt = quote + 1;
+        chunk.newlinesBeforeClose = countNewlines(from, quote);
+        scanNormally(chunk, quote + 1, to);
+        return chunk;
+    }
+
+    private void scanNormally(Chunk chunk, int from, int to) {
+        chunk.errors = new RecordedErrors();
+        var scanner = new Scanner(source, from, to, chunk.errors);
+        chunk.tokens = scanner.scan();
+        chunk.openStringStart = scanner.openStringStart();
+    }
+
+    private int countNewlines(int from, int to) {
+        var count = 0;
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    // Each chunk's scans come in order, the normal one first
+    private TokenBuffer merge(List<Future<Chunk>> scans) {
+        var tokens = new TokenBuffer(source);
+        // Line the current chunk starts at
+        var line = 1;
+        // Start of the string the previous chunk ended in, -1 if it didn't end in one
+        var openString = -1;
+
+        for (int i = 0; i < scans.size(); i++) {
+            var normal = get(scans.get(i));
+            var chunk = normal;
+            if (i > 0) {
+                var inString = get(scans.get(++i));
+                chunk = openString < 0 ? normal : inString;
+            }
+            var last = i == scans.size() - 1;
+
+            var restLine = line;
+            if (openString >= 0) {
+                if (chunk.closesAt < 0) {
+                    line += chunk.newlines;
+                    if (last) {
+                        diagnostics.error(line, "Unterminated string.");
+                        tokens.add(TokenType.EOF, source.length(), 0, line, null);
+                    }
+                    continue;
+                }
+
+                restLine = line + chunk.newlinesBeforeClose;
+                var literal = source.substring(openString + 1, chunk.closesAt - 1);
+                tokens.add(TokenType.STRING, openString, chunk.closesAt - openString, restLine, literal);
+                openString = -1;
+            }
+
+            chunk.errors.replay(diagnostics, restLine - 1);
+            // Only the last chunk really ends with EOF
+            var count = last ? chunk.tokens.size() : chunk.tokens.size() - 1;
+            tokens.append(chunk.tokens, count, restLine - 1);
+
+            openString = chunk.openStringStart;
+            line += chunk.newlines;
+        }
+        tokens.intern(new Symbols());
+        return tokens;
+    }
+
+    private static Chunk get(Future<Chunk> scan) {
+        try {
+            return scan.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Scanning a chunk failed", e.getCause());
+        }
+    }
+
+    // Errors of one chunk, kept until the merge knows whether they count and at which line
+    private static class RecordedErrors extends Diagnostics {
+        private final List<Integer> lines = new ArrayList<>();
+        private final List<String> messages = new ArrayList<>();
+
+        RecordedErrors() {
+            super(null);
+        }
+
+        @Override
+        void error(int line, String message) {
+            lines.add(line);
+            messages.add(message);
+        }
+
+        void replay(Diagnostics diagnostics, int lineOffset) {
+            for (int i = 0; i < lines.size(); i++) {
+                diagnostics.error(lines.get(i) + lineOffset, messages.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/*
+    Parsed programs kept on disk in the .loxc format, so running an unchanged script again
+    skips scanning and parsing altogether.
+
+    An entry is named after the SHA-256 of the format version and the source, so a changed
+    script, or a new format, simply misses. Entries are mapped and decoded in place. One that
+    can't be read back whole, e.g. one truncated by a crash, is treated as a miss, and rebuilt.
+    Entries are written to a temporary file first and then moved into place, so concurrent
+    runs never read a half written one.
+
+    The cache is only ever an optimization: failing to read or write it never fails a run.
+ */
+class ParseCache {
+    private final Path directory;
+
+    ParseCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // The cached program, null if there is none that's usable
+    List<Stmt> load(Path entry) {
+        if (!Files.isRegularFile(entry)) return null;
+
+        try {
+            return AstCodec.decode(ByteScanner.map(entry));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    void store(Path entry, List<Stmt> statements) {
+        try {
+            Files.createDirectories(directory);
+            var temporary = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporary, AstCodec.encode(statements));
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            // Next run parses again, and tries to store it again
+        }
+    }
+
+    // Where source's program is cached
+    Path entry(ByteBuffer source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform has SHA-256", e);
+        }
+        digest.update(ByteBuffer.allocate(4).putInt(AstCodec.FORMAT_VERSION).flip());
+        digest.update(source.duplicate());
+        return directory.resolve(HexFormat.of().formatHex(digest.digest()) + ".loxc");
+    }
+}
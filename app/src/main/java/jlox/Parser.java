@@ -1,10 +1,10 @@
 package jlox;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Supplier;
+import java.util.function.Consumer;
 
 import static jlox.TokenType.*;
 
@@ -13,8 +13,10 @@ import static jlox.TokenType.*;
     program     →   declaration* EOF ;
     declaration →   varDecl | statement ;
     varDecl     →   "var" IDENTIFIER ("=" expression)? ";" ;
-    statement   →   exprStmt | printStmt | block | ifStmt  ;
+    statement   →   exprStmt | printStmt | block | ifStmt | whileStmt | forStmt ;
     ifStmt      →   "if" "(" expression ")" statement ("else" statement)?  ;
+    whileStmt   →   "while" "(" expression ")" statement ;
+    forStmt     →   "for" "(" ( varDecl | exprStmt | ";" ) expression? ";" expression? ")" statement ;
     block       →   "{" declaration* "}" ;
     exprStmt    →   expression ";" ;
     printStmt   →   "print" expression ";" ;
@@ -27,6 +29,8 @@ import static jlox.TokenType.*;
     unary       →   ( "!" | "-" ) unary | primary ;
     primary     →   NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")" | IDENTIFIER;
 
+    Rules from assignment to primary aren't functions of their own, see expression().
+
     Grammar notation    |   Code representation
     ---------------------------------------------------------
          Terminal       |   Code to match and consume a token
@@ -41,13 +45,63 @@ public class Parser {
         On parse error, look forward for these token types to synchronize the parser
         and parse the rest of the source, so that the error is not last thing reported.
      */
-    private final static Set<TokenType> expressionStarters = Set.of(CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN);
+    private final static Set<TokenType> expressionStarters = EnumSet.of(CLASS, FUN, VAR, FOR, IF, WHILE, PRINT, RETURN);
+
+    /*
+        Everything from assignment down to primary is parsed by operator precedence, driven by
+        two tables indexed by token type: what a token parses when it is an operand by itself,
+        and how tightly it binds as a binary operator (NONE when it isn't one, which ends the operand).
+     */
+    private static final int NONE = 0;
+    private static final int EQUALITY = 1;
+    private static final int COMPARISON = 2;
+    private static final int TERM = 3;
+    private static final int FACTOR = 4;
+
+    // Called with the operand's token already consumed
+    private interface PrimaryRule {
+        Expr parse(Parser parser);
+    }
+
+    private static final PrimaryRule[] primaryRules = new PrimaryRule[TokenType.values().length];
+    private static final int[] infixPrecedence = new int[TokenType.values().length];
+    private static final Set<TokenType> prefixOperators = EnumSet.of(BANG, MINUS);
+
+    static {
+        primary(parser -> new Expr.Literal(false), FALSE);
+        primary(parser -> new Expr.Literal(true), TRUE);
+        primary(parser -> new Expr.Literal(null), NIL);
+        primary(Parser::literal, NUMBER, STRING);
+        primary(Parser::variable, IDENTIFIER);
+
+        infix(EQUALITY, BANG_EQUAL, EQUAL_EQUAL);
+        infix(COMPARISON, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL);
+        infix(TERM, MINUS, PLUS);
+        infix(FACTOR, SLASH, STAR);
+    }
+
+    private static void primary(PrimaryRule rule, TokenType... types) {
+        for (var type : types) primaryRules[type.ordinal()] = rule;
+    }
+
+    private static void infix(int precedence, TokenType... types) {
+        for (var type : types) infixPrecedence[type.ordinal()] = precedence;
+    }
+
+    /*
+        Tokens are only materialized when the parser hands one out (previous() and error reporting);
+        everything else looks at token types only.
+     */
+    private final TokenStream tokens;
+    private final Diagnostics diagnostics;
 
-    private final List<Token> tokens;
-    private int current = 0;
+    Parser(TokenBuffer tokens, Diagnostics diagnostics) {
+        this(tokens.stream(), diagnostics);
+    }
 
-    public Parser(List<Token> tokens) {
+    Parser(TokenStream tokens, Diagnostics diagnostics) {
         this.tokens = tokens;
+        this.diagnostics = diagnostics;
     }
 
     List<Stmt> parse() {
@@ -62,6 +116,16 @@ public class Parser {
         }
     }
 
+    // Hands every top level declaration to sink as soon as it's parsed; ones with errors are left out
+    void parse(Consumer<Stmt> sink) {
+        while (!isAtEnd()) {
+            var declaration = declaration();
+            if (declaration != null) {
+                sink.accept(declaration);
+            }
+        }
+    }
+
     // declaration → varDecl | statement ;
     private Stmt declaration() {
         try {
@@ -87,6 +151,8 @@ public class Parser {
     // statement → exprStmt | printStmt ;
     private Stmt statement() {
         if (advanceIf(IF)) return ifStatement();
+        if (advanceIf(WHILE)) return whileStatement();
+        if (advanceIf(FOR)) return forStatement();
         if (advanceIf(PRINT)) return printStatement();
         if (advanceIf(LEFT_BRACE)) return new Stmt.Block(block());
         return expressionStatement();
@@ -106,6 +172,47 @@ public class Parser {
         return new Stmt.IfStmt(ifCondition, thenBranch, elseBranch);
     }
 
+    private Stmt whileStatement() {
+        expect(LEFT_PAREN, "Expected ( after while");
+        Expr condition = expression();
+        expect(RIGHT_PAREN, "Expected ) after condition");
+        return new Stmt.While(condition, statement());
+    }
+
+    /*
+        There's no for node, a for loop is parsed straight into the while loop it stands for:
+
+            { initializer; while (condition) { body; increment; } }
+
+        with a missing condition being true, and the blocks left out where there's nothing to wrap.
+     */
+    private Stmt forStatement() {
+        expect(LEFT_PAREN, "Expected ( after for");
+        Stmt initializer;
+        if (advanceIf(SEMICOLON)) {
+            initializer = null;
+        } else if (advanceIf(VAR)) {
+            initializer = varDeclaration();
+        } else {
+            initializer = expressionStatement();
+        }
+
+        Expr condition = check(SEMICOLON) ? new Expr.Literal(true) : expression();
+        expect(SEMICOLON, "Expected ; after loop condition");
+        Expr increment = check(RIGHT_PAREN) ? null : expression();
+        expect(RIGHT_PAREN, "Expected ) after for clauses");
+
+        Stmt body = statement();
+        if (increment != null) {
+            body = new Stmt.Block(List.of(body, new Stmt.Expression(increment)));
+        }
+        Stmt loop = new Stmt.While(condition, body);
+        if (initializer != null) {
+            loop = new Stmt.Block(List.of(initializer, loop));
+        }
+        return loop;
+    }
+
     private Stmt printStatement() {
         var value = expression();
         expect(SEMICOLON, "Expected ; after print value");
@@ -128,143 +235,196 @@ public class Parser {
         return statements;
     }
 
-    // expression → equality ;
-    private Expr expression() {
-        return assignment();
-    }
-
-    // assignment → IDENTIFIER "=" assignment | equality ;
-    private Expr assignment() {
-        Expr expr = equality();
+    /*
+        expression → assignment ; and all the rules below it.
 
-        if (advanceIf(EQUAL)) {
-            Token equals = previous();
-            Expr value = assignment();
+        Parsed without recursion, so long operator chains and deep nesting of parentheses,
+        prefix operators or assignments only take heap. Expressions parsed so far wait on
+        one stack, and on another what each of them is waiting for: a binary operator for
+        its right operand, a prefix operator for its operand, an assignment for its value
+        (its target waits on the operand stack), or a grouping for its closing paren.
 
-            if (expr instanceof Expr.Variable) {
-                Token name = ((Expr.Variable)expr).name;
-                return new Expr.Assign(name, value);
+        Expressions never nest in one another through anything but groupings,
+        so the stacks are kept between calls.
+     */
+    private Expr expression() {
+        operands.clear();
+        waiting.clear();
+
+        while (true) {
+            // Prefix operators and groupings opened before the operand itself
+            while (true) {
+                if (prefixOperators.contains(peekType())) {
+                    advance();
+                    waiting.add(new Waiting(Waiting.PREFIX, previous()));
+                } else if (advanceIf(LEFT_PAREN)) {
+                    waiting.add(Waiting.GROUPING);
+                } else {
+                    break;
+                }
+            }
+            var primary = primaryRules[peekType().ordinal()];
+            if (primary == null) {
+                throw error("Expected an expression");
+            }
+            advance();
+            operands.add(primary.parse(this));
+
+            // Then finish all the operand completes, until an operator wants another one
+            while (true) {
+                // Prefix operators bind tightest, so they take the operand right away
+                while (waitingFor(Waiting.PREFIX)) {
+                    var operator = popWaiting().operator;
+                    operands.add(new Expr.Unary(operator, popOperand()));
+                }
+
+                var precedence = infixPrecedence[peekType().ordinal()];
+                if (precedence != NONE) {
+                    // Same or tighter binding operators to the left go first, so all of them are left associative
+                    reduceBinary(precedence);
+                    advance();
+                    waiting.add(new Waiting(Waiting.BINARY, previous()));
+                    break;
+                }
+
+                reduceBinary(EQUALITY);
+                if (advanceIf(EQUAL)) {
+                    waiting.add(Waiting.ASSIGNMENT_VALUE);
+                    break;
+                }
+
+                // Assignments are right associative, so the innermost one is finished first
+                while (waitingFor(Waiting.ASSIGNMENT)) {
+                    popWaiting();
+                    var value = popOperand();
+                    operands.add(assignment(popOperand(), value));
+                }
+
+                if (waiting.isEmpty()) {
+                    return popOperand();
+                }
+                // Only a grouping is left waiting at this point, and it is complete itself
+                expect(RIGHT_PAREN, "Expected ')' to close grouping expression");
+                popWaiting();
+                operands.add(new Expr.Grouping(popOperand()));
             }
-            // Don't throw, since there's no need to synchronize,
-            // as we 'know where we are' and not in panic mode
-            //noinspection ThrowableNotThrown
-            error(equals, "Invalid assignment target");
         }
-
-        return expr;
     }
 
-    // equality → comparison ( ( "!=" | "==" ) comparison )* ;
-    private Expr equality() {
-        return binaryExpression(this::comparison, BANG_EQUAL, EQUAL_EQUAL);
-    }
+    // What the operands in Parser.operands are waiting for
+    private static class Waiting {
+        static final int BINARY = 0;
+        static final int PREFIX = 1;
+        static final int ASSIGNMENT = 2;
+        static final int GROUP = 3;
 
-    // comparison → term ( ( ">" | ">=" | "<" | "<=" ) term )* ;
-    private Expr comparison() {
-        return binaryExpression(this::term, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL);
-    }
+        static final Waiting ASSIGNMENT_VALUE = new Waiting(ASSIGNMENT, null);
+        static final Waiting GROUPING = new Waiting(GROUP, null);
 
-    // term → factor ( ( "-" | "+" ) factor )* ;
-    private Expr term() {
-        return binaryExpression(this::factor, MINUS, PLUS);
-    }
-
-    // factor → unary ( ( "/" | "*" ) unary )* ;
-    private Expr factor() {
-        return binaryExpression(this::unary, SLASH, STAR);
-    }
+        final int kind;
+        final Token operator;
 
-    // unary → ( "!" | "-" ) unary | primary ;
-    private Expr unary() {
-        if (advanceIf(BANG, MINUS)) {
-            var operator = previous();
-            var right = unary();
-            return new Expr.Unary(operator, right);
+        Waiting(int kind, Token operator) {
+            this.kind = kind;
+            this.operator = operator;
         }
-
-        return primary();
     }
 
-    // primary → NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")" ;
-    private Expr primary() {
-        if (advanceIf(FALSE)) return new Expr.Literal(false);
-        if (advanceIf(TRUE)) return new Expr.Literal(true);
-        if (advanceIf(NIL)) return new Expr.Literal(null);
-
-        if (advanceIf(NUMBER, STRING)) {
-            return new Expr.Literal(previous().literal);
+    private final List<Expr> operands = new ArrayList<>();
+    private final List<Waiting> waiting = new ArrayList<>();
+
+    // Builds binary expressions from waiting operators that bind at least as tightly as precedence
+    private void reduceBinary(int precedence) {
+        while (waitingFor(Waiting.BINARY)
+                && infixPrecedence[waiting.get(waiting.size() - 1).operator.type.ordinal()] >= precedence) {
+            var operator = popWaiting().operator;
+            var right = popOperand();
+            var left = popOperand();
+            operands.add(new Expr.Binary(left, operator, right));
         }
+    }
 
-        if (advanceIf(IDENTIFIER)) {
-            return new Expr.Variable(previous());
+    // assignment → IDENTIFIER "=" assignment | equality ;
+    private Expr assignment(Expr target, Expr value) {
+        if (target instanceof Expr.Variable) {
+            Token name = ((Expr.Variable)target).name;
+            return new Expr.Assign(name, value);
         }
+        // Don't throw, since there's no need to synchronize,
+        // as we 'know where we are' and not in panic mode
+        //noinspection ThrowableNotThrown
+        error("Invalid assignment target");
+        return target;
+    }
 
-        if (advanceIf(LEFT_PAREN)) {
-            var expr = expression();
-            expect(RIGHT_PAREN, "Expected ')' to close grouping expression");
-            return new Expr.Grouping(expr);
-        }
+    private boolean waitingFor(int kind) {
+        return !waiting.isEmpty() && waiting.get(waiting.size() - 1).kind == kind;
+    }
 
-        throw error(peek(), "Expected an expression");
+    private Waiting popWaiting() {
+        return waiting.remove(waiting.size() - 1);
     }
 
-    private Expr binaryExpression(Supplier<Expr> higherPrecedence, TokenType... types) {
-        Expr expr = higherPrecedence.get();
+    private Expr popOperand() {
+        return operands.remove(operands.size() - 1);
+    }
 
-        while (advanceIf(types)) {
-            var operator = previous();
-            var right = higherPrecedence.get();
-            expr = new Expr.Binary(expr, operator, right);
-        }
+    private Expr literal() {
+        return new Expr.Literal(tokens.previousLiteral());
+    }
 
-        return expr;
+    private Expr variable() {
+        return new Expr.Variable(previous());
     }
 
-    private boolean advanceIf(TokenType... types) {
-        boolean found = Arrays.stream(types).anyMatch(this::check);
-        if (found) {
+    private boolean advanceIf(TokenType type) {
+        if (check(type)) {
             advance();
+            return true;
         }
-        return found;
+        return false;
     }
 
     private Token expect(TokenType tokenType, String message) {
-        if (check(tokenType)) return advance();
+        if (check(tokenType)) {
+            advance();
+            return previous();
+        }
 
-        throw error(peek(), message);
+        throw error(message);
     }
 
     private boolean check(TokenType type) {
-        return !isAtEnd() && peek().type == type;
+        return !isAtEnd() && peekType() == type;
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    private void advance() {
+        if (!isAtEnd()) tokens.advance();
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.previous();
     }
 
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return peekType() == EOF;
     }
 
-    private Token peek() {
-        return tokens.get(current);
+    private TokenType peekType() {
+        return tokens.peekType();
     }
 
-    private ParseError error(Token token, String message) {
-        Lox.error(peek(), message);
+    // Errors are always reported at the current token, whatever token they are about
+    private ParseError error(String message) {
+        diagnostics.error(tokens.peek(), message);
         return new ParseError();
     }
 
     private void synchronize() {
         advance();
         while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) return;
-            if (expressionStarters.contains(peek().type)) return;
+            if (tokens.previousType() == SEMICOLON) return;
+            if (expressionStarters.contains(peekType())) return;
             advance();
         }
     }
@@ -0,0 +1,156 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/*
+    Streaming execution behind LoxContext.runStreaming.
+
+    A parser thread scans and parses source, putting each top level declaration on a bounded
+    queue as soon as it's complete. The calling thread meanwhile takes whatever has queued up
+    since it last looked, prepares it and executes it, so execution starts with the first
+    declaration instead of after the last one. The bound keeps a fast parser from running
+    arbitrarily far ahead of a slow program.
+
+    The parser stops queueing at its first error, so exactly the declarations before it run,
+    whatever the timing. It doesn't report errors itself, as that flushes the Output the calling
+    thread is printing to; they are recorded, and reported by the calling thread once everything
+    before them has run. A runtime error stops the parser as well, and its errors go unreported.
+ */
+final class Pipeline {
+    private static final int CAPACITY = 256;
+    // Put after the last declaration; compared by identity
+    private static final Stmt END = new Stmt.Block(List.of());
+
+    private final BlockingQueue<Stmt> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final String source;
+    private final Diagnostics diagnostics;
+    // Written by the parser thread only, and read after it queued END
+    private final RecordedErrors parseErrors = new RecordedErrors();
+    private volatile Throwable parserFailure;
+
+    private Pipeline(String source, Diagnostics diagnostics) {
+        this.source = source;
+        this.diagnostics = diagnostics;
+    }
+
+    static void run(String source, LoxEngine engine, Executor executor, Diagnostics diagnostics) {
+        var pipeline = new Pipeline(source, diagnostics);
+        var parser = new Thread(pipeline::parse, "lox-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        try {
+            pipeline.execute(engine, executor);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            parser.interrupt();
+            joinUninterruptibly(parser);
+        }
+
+        if (pipeline.parserFailure != null) {
+            throw new IllegalStateException("Parser thread failed", pipeline.parserFailure);
+        }
+    }
+
+    private void execute(LoxEngine engine, Executor executor) throws InterruptedException {
+        var batch = new ArrayList<Stmt>();
+        for (; ; ) {
+            batch.clear();
+            batch.add(queue.take());
+            queue.drainTo(batch);
+
+            // Nothing is ever queued after END
+            var end = batch.get(batch.size() - 1) == END;
+            if (end) {
+                batch.remove(batch.size() - 1);
+            }
+            if (!batch.isEmpty()) {
+                executor.interpret(engine.prepare(new ArrayList<>(batch)));
+                if (diagnostics.hadRuntimeError()) return;
+            }
+            if (end) {
+                parseErrors.replay(diagnostics);
+                return;
+            }
+        }
+    }
+
+    private void parse() {
+        try {
+            var tokens = new Scanner(source, parseErrors).stream();
+            new Parser(tokens, parseErrors).parse(declaration -> {
+                if (Thread.currentThread().isInterrupted()) throw new CancellationException();
+                if (!parseErrors.hadError()) {
+                    put(declaration);
+                }
+            });
+            put(END);
+        } catch (CancellationException e) {
+            // Execution has stopped, nobody is waiting for the rest
+        } catch (RuntimeException | Error e) {
+            parserFailure = e;
+            try {
+                put(END);
+            } catch (CancellationException cancelled) {
+                // Same as above
+            }
+        }
+    }
+
+    private void put(Stmt stmt) {
+        try {
+            queue.put(stmt);
+        } catch (InterruptedException e) {
+            throw new CancellationException();
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        var interrupted = false;
+        for (; ; ) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Scan and parse errors, in the order they were found
+    private static class RecordedErrors extends Diagnostics {
+        private final List<Integer> lines = new ArrayList<>();
+        private final List<String> wheres = new ArrayList<>();
+        private final List<String> messages = new ArrayList<>();
+
+        RecordedErrors() {
+            super(null);
+        }
+
+        @Override
+        void report(int line, String where, String message) {
+            lines.add(line);
+            wheres.add(where);
+            messages.add(message);
+        }
+
+        @Override
+        boolean hadError() {
+            return !lines.isEmpty();
+        }
+
+        void replay(Diagnostics diagnostics) {
+            for (int i = 0; i < lines.size(); i++) {
+                diagnostics.report(lines.get(i), wheres.get(i), messages.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/*
+    Walks an expression children first, left to right, with an explicit stack instead of
+    recursion, so however deep the tree is, only the heap limits it.
+
+    That is also exactly the order expressions are evaluated in: Lox operators don't short
+    circuit, and type checks happen once all operands are evaluated. So a pass that just
+    needs every child handled before its parent can visit nodes with visitors that don't
+    recurse, and an evaluator can keep its operands on a stack of its own.
+
+    The stack is kept between walks, but a walk must not start another one on the same instance.
+    A walk stopped by an exception from the action leaves nothing behind for the next one.
+ */
+final class PostOrder {
+    private Expr[] nodes = new Expr[32];
+    // Whether a node's children are already on the stack, above it
+    private boolean[] expanded = new boolean[32];
+    private int size = 0;
+
+    void walk(Expr root, Consumer<Expr> action) {
+        Arrays.fill(nodes, 0, size, null);
+        size = 0;
+
+        push(root, false);
+        while (size > 0) {
+            size--;
+            var expr = nodes[size];
+            nodes[size] = null;
+
+            if (expanded[size]) {
+                action.accept(expr);
+                continue;
+            }
+
+            push(expr, true);
+            // Pushed right to left, so they come off left to right
+            if (expr instanceof Expr.Binary) {
+                push(((Expr.Binary) expr).right, false);
+                push(((Expr.Binary) expr).left, false);
+            } else if (expr instanceof Expr.Unary) {
+                push(((Expr.Unary) expr).right, false);
+            } else if (expr instanceof Expr.Grouping) {
+                push(((Expr.Grouping) expr).expression, false);
+            } else if (expr instanceof Expr.Assign) {
+                push(((Expr.Assign) expr).value, false);
+            }
+        }
+    }
+
+    private void push(Expr expr, boolean isExpanded) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            expanded = Arrays.copyOf(expanded, size * 2);
+        }
+        nodes[size] = expr;
+        expanded[size] = isExpanded;
+        size++;
+    }
+}
@@ -0,0 +1,202 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+    Static pass run between parsing and interpreting. For every local variable
+    reference it records how many frames up the variable lives (depth) and its
+    index in that frame (slot), so the Interpreter can skip name lookups.
+
+    Scopes are elided: there are no functions, so every block nested in a top level block
+    lives in that block's frame, its variables in slots after those of the blocks around it,
+    which sibling blocks then reuse. Shadowing a variable just takes another slot. So only
+    top level blocks that declare anything, at any depth, get a frame, sized for the most
+    variables ever in scope at once; every other block has 0 slots and runs in the frame
+    it's in, and every local is at depth 0.
+    It also marks binary expressions statically known to produce a number, which
+    the Interpreter then evaluates without boxing.
+
+    References that don't resolve to any enclosing block, and top level declarations, are
+    globals: depth -1, and the slot the engine's GlobalSlots has for the name, the same in every
+    program of the engine. Whether a global is defined is still only known at run time, which
+    keeps the runtime "Variable is undefined" error where it was.
+
+    Expressions are walked in post-order without recursion, so the expression visitors
+    never descend themselves; by the time a node is visited its children are resolved.
+ */
+class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    // Innermost scope last; each maps a variable name to its slot in the frame
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+    private final GlobalSlots globals;
+    // Slots the scopes take in the current frame, and the most they ever took at once
+    private int frameSize = 0;
+    private int maxFrameSize = 0;
+    private final PostOrder postOrder = new PostOrder();
+    private final Consumer<Expr> visit = expr -> expr.accept(this);
+
+    Resolver(GlobalSlots globals) {
+        this.globals = globals;
+    }
+
+    void resolve(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            resolve(statement);
+        }
+    }
+
+    private void resolve(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void resolve(Expr expr) {
+        postOrder.walk(expr, visit);
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        var outermost = scopes.isEmpty();
+        var firstSlot = frameSize;
+        scopes.add(new HashMap<>());
+        resolve(stmt.statements);
+        scopes.remove(scopes.size() - 1);
+        frameSize = firstSlot;
+
+        if (outermost) {
+            stmt.slots = maxFrameSize;
+            maxFrameSize = 0;
+        } else {
+            stmt.slots = 0;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        // Initializer first, so 'var a = a;' still refers to the outer 'a'
+        if (stmt.initializer != null) {
+            resolve(stmt.initializer);
+        }
+        if (scopes.isEmpty()) {
+            stmt.slot = globals.slot(stmt.name.lexeme);
+        } else {
+            stmt.depth = 0;
+            stmt.slot = declare(stmt.name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmtStmt(Stmt.IfStmt stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            resolve(stmt.elseBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        expr.slot = slotOf(expr.name);
+        expr.depth = expr.slot < 0 ? -1 : 0;
+        if (expr.depth < 0) {
+            expr.slot = globals.slot(expr.name.lexeme);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            case MINUS: case STAR: case SLASH:
+                expr.numeric = true;
+                break;
+            case PLUS:
+                expr.numeric = isNumeric(expr.left) && isNumeric(expr.right);
+                break;
+            default:
+                expr.numeric = false;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        expr.slot = slotOf(expr.name);
+        expr.depth = expr.slot < 0 ? -1 : 0;
+        if (expr.depth < 0) {
+            expr.slot = globals.slot(expr.name.lexeme);
+        }
+        return null;
+    }
+
+    /*
+        Whether expr is statically known to evaluate to a number, whenever it evaluates at all.
+        Binary nodes carry the answer from resolution, so this never walks more than groupings.
+     */
+    static boolean isNumeric(Expr expr) {
+        while (expr instanceof Expr.Grouping) {
+            expr = ((Expr.Grouping) expr).expression;
+        }
+        if (expr instanceof Expr.Binary) return ((Expr.Binary) expr).numeric;
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type == TokenType.MINUS;
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Double;
+        return false;
+    }
+
+    // Re-declaring a name in the same scope reuses its slot, same as redefining did with the map
+    private int declare(Token name) {
+        var scope = scopes.get(scopes.size() - 1);
+        return scope.computeIfAbsent(name.lexeme, k -> {
+            maxFrameSize = Math.max(maxFrameSize, frameSize + 1);
+            return frameSize++;
+        });
+    }
+
+    // Slot of the innermost local named name, -1 for a global
+    private int slotOf(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            var slot = scopes.get(i).get(name.lexeme);
+            if (slot != null) return slot;
+        }
+        return -1;
+    }
+}
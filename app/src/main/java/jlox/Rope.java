@@ -0,0 +1,98 @@
+package jlox;
+
+/*
+    A Lox string built by concatenation, so that appending to a string keeps costing only
+    what is appended, instead of a copy of everything before it too.
+
+    A rope is a prefix of a StringBuilder shared with the ropes it was appended from, and
+    those appended from it. Appending to the longest of them appends to the builder in place;
+    the shorter ones never see the difference, as they only ever look at their own prefix.
+    Appending to any other rope, or in front of one, starts a new builder.
+
+    The characters are only copied into a String when the rope is printed, compared or hashed,
+    and then just once. Ropes are meant for values of one context, so one thread at a time;
+    anything longer lived, like a folded constant, is flattened first.
+ */
+final class Rope implements CharSequence {
+    // Shorter results are plain Strings, copying those is cheaper than sharing a builder
+    static final int MIN_LENGTH = 64;
+
+    private final StringBuilder chars;
+    private final int length;
+    private String flat;
+
+    private Rope(StringBuilder chars, int length) {
+        this.chars = chars;
+        this.length = length;
+    }
+
+    // A String or a Rope, either way with the characters of left followed by those of right
+    static CharSequence concat(CharSequence left, CharSequence right) {
+        var length = left.length() + right.length();
+        if (length < MIN_LENGTH) {
+            return left.toString().concat(right.toString());
+        }
+
+        if (left instanceof Rope) {
+            var rope = (Rope) left;
+            if (rope.length == rope.chars.length()) {
+                append(rope.chars, right);
+                return new Rope(rope.chars, length);
+            }
+        }
+        var chars = new StringBuilder(length * 2);
+        append(chars, left);
+        append(chars, right);
+        return new Rope(chars, length);
+    }
+
+    private static void append(StringBuilder chars, CharSequence value) {
+        if (value instanceof Rope) {
+            var rope = (Rope) value;
+            if (rope.flat != null) {
+                chars.append(rope.flat);
+            } else {
+                chars.append(rope.chars, 0, rope.length);
+            }
+        } else {
+            chars.append(value);
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of a rope of length " + length);
+        }
+        return chars.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            flat = chars.substring(0, length);
+        }
+        return flat;
+    }
+
+    // Same contents, same hash, as the String it flattens to
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Rope && toString().equals(o.toString());
+    }
+}
@@ -1,10 +1,15 @@
 package jlox;
 
 class RuntimeError extends RuntimeException {
-  final Token token;
+  final int line;
 
   public RuntimeError(Token token, String message) {
+    this(token.line, message);
+  }
+
+  // For engines that only keep line tables around, not tokens
+  public RuntimeError(int line, String message) {
     super(message);
-    this.token = token;
+    this.line = line;
   }
 }
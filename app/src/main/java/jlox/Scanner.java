@@ -1,31 +1,83 @@
 package jlox;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static jlox.TokenType.*;
 
+/*
+    Scans either all at once, into a TokenBuffer, or lazily, through stream(): one token
+    at a time as the Parser asks for it, so only the Parser's two token window is ever in memory.
+    One Scanner does one or the other, once.
+
+    Identifiers are interned as they are scanned, and carried in the literal slot in place of
+    a literal, so every token naming the same variable gets the very same lexeme String.
+ */
 class Scanner {
     private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private int start = 0;
-    private int current = 0;
+    private final Diagnostics diagnostics;
+    private final Symbols symbols = new Symbols();
+    // Scanning stops here, which is before the end of source only for ParallelScanner's chunks
+    private final int end;
+    private int start;
+    private int current;
     private int line = 1;
+    // Where a string left open at the end of a chunk starts; -1 if none was
+    private int openStringStart = -1;
+
+    // The token scanToken() just produced, if any; it spans start to current
+    private TokenType scanned;
+    private Object scannedLiteral;
 
+    // Standalone scanning, with errors going straight to stderr
     public Scanner(String source) {
+        this(source, new Diagnostics(System.err));
+    }
+
+    Scanner(String source, Diagnostics diagnostics) {
+        this(source, 0, source.length(), diagnostics);
+    }
+
+    // Scans just from..to of source, counting lines from 1 at from
+    Scanner(String source, int from, int to, Diagnostics diagnostics) {
         this.source = source;
+        this.diagnostics = diagnostics;
+        this.start = from;
+        this.current = from;
+        this.end = to;
     }
 
+    // Every token as an object; the Parser reads a TokenStream instead
     List<Token> scanTokens() {
-        while (!isAtEnd()) {
+        return scan().toList();
+    }
+
+    TokenBuffer scan() {
+        var tokens = new TokenBuffer(source);
+        while (scanNext()) {
+            tokens.add(scanned, start, current - start, line, scannedLiteral);
+        }
+        return tokens;
+    }
+
+    TokenStream stream() {
+        return new LazyStream();
+    }
+
+    // Scans up to and including the next token, leaving it in scanned; false once EOF has been produced
+    private boolean scanNext() {
+        if (scanned == EOF) return false;
+
+        scanned = null;
+        while (scanned == null && !isAtEnd()) {
             // At beginning of new lexeme
             start = current;
             scanToken();
         }
-        //tokens.add(new Token(EOF, "", null, line));
-        start = current;
-        addToken(EOF);
-        return tokens;
+        if (scanned == null) {
+            start = current;
+            addToken(EOF);
+        }
+        return true;
     }
 
     private void scanToken() {
@@ -67,7 +119,7 @@ class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexpected character [" + c + "].");
+                    diagnostics.error(line, "Unexpected character [" + c + "].");
                 }
                 break;
         }
@@ -76,9 +128,9 @@ class Scanner {
     private void identifier() {
         while (isAlphanumeric(peek())) advance();
 
-        var identifier = getCurrentText();
-        var tokenType = getKeyword(identifier).orElse(IDENTIFIER);
-        addToken(tokenType);
+        var length = current - start;
+        var tokenType = keyword(source, start, length);
+        addToken(tokenType, tokenType == IDENTIFIER ? symbols.intern(source, start, length) : null);
     }
 
     private void number() {
@@ -98,7 +150,13 @@ class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
+            if (end < source.length()) {
+                // Only the end of the chunk; the string goes on in the next one
+                openStringStart = start;
+            } else {
+                diagnostics.error(line, "Unterminated string.");
+            }
+            return;
         }
 
         // Closing "
@@ -126,8 +184,8 @@ class Scanner {
     }
 
     private void addToken(TokenType type, Object literal) {
-        var text = getCurrentText();
-        tokens.add(new Token(type, text, literal, line));
+        scanned = type;
+        scannedLiteral = literal;
     }
 
     private boolean match(char expected) {
@@ -144,7 +202,7 @@ class Scanner {
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
+        if (current + 1 >= end) return '\0';
         return source.charAt(current + 1);
     }
 
@@ -154,10 +212,84 @@ class Scanner {
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end;
+    }
+
+    int openStringStart() {
+        return openStringStart;
     }
 
     private String getCurrentText() {
         return source.substring(start, current);
     }
+
+    // Scans a token whenever the window moves; consumed tokens are gone for good
+    private class LazyStream implements TokenStream {
+        private TokenType type;
+        private int tokenStart;
+        private int tokenLength;
+        private int tokenLine;
+        private Object literal;
+
+        private TokenType previousType;
+        private int previousStart;
+        private int previousLength;
+        private int previousLine;
+        private Object previousLiteral;
+
+        LazyStream() {
+            next();
+        }
+
+        @Override
+        public void advance() {
+            previousType = type;
+            previousStart = tokenStart;
+            previousLength = tokenLength;
+            previousLine = tokenLine;
+            previousLiteral = literal;
+            next();
+        }
+
+        private void next() {
+            scanNext();
+            type = scanned;
+            tokenStart = start;
+            tokenLength = current - start;
+            tokenLine = line;
+            literal = scannedLiteral;
+        }
+
+        @Override
+        public TokenType peekType() {
+            return type;
+        }
+
+        @Override
+        public TokenType previousType() {
+            return previousType;
+        }
+
+        @Override
+        public Token peek() {
+            return token(type, tokenStart, tokenLength, tokenLine, literal);
+        }
+
+        @Override
+        public Token previous() {
+            return token(previousType, previousStart, previousLength, previousLine, previousLiteral);
+        }
+
+        @Override
+        public Object previousLiteral() {
+            return previousType == IDENTIFIER ? null : previousLiteral;
+        }
+
+        private Token token(TokenType type, int start, int length, int line, Object literal) {
+            if (type == IDENTIFIER) {
+                return new Token(type, (String) literal, null, line);
+            }
+            return new Token(type, source.substring(start, start + length), literal, line);
+        }
+    }
 }
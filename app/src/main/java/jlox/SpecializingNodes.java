@@ -0,0 +1,178 @@
+package jlox;
+
+import static jlox.Values.*;
+
+/*
+    Self-specializing nodes for ClosureCompiler's polymorphic operators.
+
+    Each node starts uninitialized and, on its first execution, rewrites itself into
+    a variant specialized for the operand types it just saw, which then runs with none of
+    the generic type dispatch as long as its guess holds. The first time it sees something
+    else, it rewrites itself into the generic variant for good, so a node changes at most twice.
+
+    Most sites only ever see one combination of types, so for them this is
+    a monomorphic inline cache keyed on operand types.
+ */
+final class SpecializingNodes {
+    enum State { UNINITIALIZED, DOUBLES, STRINGS, GENERIC }
+
+    private SpecializingNodes() {}
+
+    static final class Add implements Evaluator {
+        private final Token operator;
+        private final Evaluator left;
+        private final Evaluator right;
+
+        private Evaluator specialized = this::uninitialized;
+        private State state = State.UNINITIALIZED;
+
+        Add(Token operator, Evaluator left, Evaluator right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object[] frame) {
+            return specialized.evaluate(frame);
+        }
+
+        State state() {
+            return state;
+        }
+
+        private Object uninitialized(Object[] frame) {
+            var l = left.evaluate(frame);
+            var r = right.evaluate(frame);
+
+            if (l instanceof Double && r instanceof Double) {
+                rewrite(State.DOUBLES, this::doubles);
+            } else if (l instanceof CharSequence && r instanceof CharSequence) {
+                rewrite(State.STRINGS, this::strings);
+            } else {
+                rewrite(State.GENERIC, this::generic);
+            }
+            return add(l, r);
+        }
+
+        private Object doubles(Object[] frame) {
+            var l = left.evaluate(frame);
+            var r = right.evaluate(frame);
+
+            if (l instanceof Double && r instanceof Double) {
+                return (double) l + (double) r;
+            }
+            rewrite(State.GENERIC, this::generic);
+            return add(l, r);
+        }
+
+        private Object strings(Object[] frame) {
+            var l = left.evaluate(frame);
+            var r = right.evaluate(frame);
+
+            if (l instanceof CharSequence && r instanceof CharSequence) {
+                return concat(l, r);
+            }
+            rewrite(State.GENERIC, this::generic);
+            return add(l, r);
+        }
+
+        private Object generic(Object[] frame) {
+            return add(left.evaluate(frame), right.evaluate(frame));
+        }
+
+        private void rewrite(State state, Evaluator specialized) {
+            this.state = state;
+            this.specialized = specialized;
+        }
+
+        private Object add(Object l, Object r) {
+            if (l instanceof CharSequence && r instanceof CharSequence) {
+                return concat(l, r);
+            }
+            return number(operator, l) + number(operator, r);
+        }
+    }
+
+    /*
+        == and !=. The generic variant goes through Object.equals, a virtual call on
+        whatever the operands happen to be; the specialized ones compare directly.
+     */
+    static final class Equal implements Evaluator {
+        private final boolean negated;
+        private final Evaluator left;
+        private final Evaluator right;
+
+        private Evaluator specialized = this::uninitialized;
+        private State state = State.UNINITIALIZED;
+
+        Equal(boolean negated, Evaluator left, Evaluator right) {
+            this.negated = negated;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(Object[] frame) {
+            return specialized.evaluate(frame);
+        }
+
+        State state() {
+            return state;
+        }
+
+        private Object uninitialized(Object[] frame) {
+            var l = left.evaluate(frame);
+            var r = right.evaluate(frame);
+
+            if (l instanceof Double && r instanceof Double) {
+                rewrite(State.DOUBLES, this::doubles);
+            } else if (l instanceof CharSequence && r instanceof CharSequence) {
+                rewrite(State.STRINGS, this::strings);
+            } else {
+                rewrite(State.GENERIC, this::generic);
+            }
+            return negated != isEqual(l, r);
+        }
+
+        private Object doubles(Object[] frame) {
+            var l = left.evaluate(frame);
+            var r = right.evaluate(frame);
+
+            if (l instanceof Double && r instanceof Double) {
+                // Same as Double.equals: NaN equals itself and 0 doesn't equal -0
+                var equal = Double.doubleToLongBits((double) l) == Double.doubleToLongBits((double) r);
+                return negated != equal;
+            }
+            rewrite(State.GENERIC, this::generic);
+            return negated != isEqual(l, r);
+        }
+
+        private Object strings(Object[] frame) {
+            var l = left.evaluate(frame);
+            var r = right.evaluate(frame);
+
+            if (l instanceof CharSequence && r instanceof CharSequence) {
+                return negated != l.toString().equals(r.toString());
+            }
+            rewrite(State.GENERIC, this::generic);
+            return negated != isEqual(l, r);
+        }
+
+        private Object generic(Object[] frame) {
+            return negated != isEqual(left.evaluate(frame), right.evaluate(frame));
+        }
+
+        private void rewrite(State state, Evaluator specialized) {
+            this.state = state;
+            this.specialized = specialized;
+        }
+    }
+
+    static double number(Token operator, Object operand) {
+        if (operand instanceof Double) {
+            return (double) operand;
+        }
+        throw new RuntimeError(operator, operandError(operator.type == TokenType.PLUS));
+    }
+}
@@ -0,0 +1,141 @@
+package jlox;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static jlox.TokenType.*;
+import static jlox.Values.*;
+
+/*
+    Evaluates expressions without recursion, for the Interpreter's stack mode (--engine=stack).
+
+    PostOrder walks the tree with its own stack, which doubles as the continuation stack,
+    and each node then leaves its value on an operand stack, taking its operands' values
+    off it. Both stacks live on the heap, so an expression nested however deep runs
+    on a thread with the smallest of stacks.
+
+    Values are boxed, and operands are type checked left first, once both are evaluated,
+    same as by the recursive Interpreter.
+ */
+final class StackEvaluator implements Expr.Visitor<Void> {
+    private final Globals globals;
+    private final PostOrder postOrder = new PostOrder();
+    private final Consumer<Expr> visit = expr -> expr.accept(this);
+
+    private Object[] operands = new Object[32];
+    private int size = 0;
+    private Environment environment;
+
+    StackEvaluator(Globals globals) {
+        this.globals = globals;
+    }
+
+    Object evaluate(Expr expr, Environment environment) {
+        this.environment = environment;
+        try {
+            postOrder.walk(expr, visit);
+            return pop();
+        } finally {
+            // Whatever a runtime error left behind
+            Arrays.fill(operands, 0, size, null);
+            size = 0;
+            this.environment = null;
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        // The value stays on the stack as the assignment's own
+        var value = operands[size - 1];
+        if (expr.depth < 0) {
+            globals.assign(expr.slot, expr.name, value);
+        } else {
+            environment.assign(expr.depth, expr.slot, value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        var right = pop();
+        var left = pop();
+        var operator = expr.operator;
+
+        switch (operator.type) {
+            case EQUAL_EQUAL: push(isEqual(left, right)); return null;
+            case BANG_EQUAL: push(!isEqual(left, right)); return null;
+        }
+        if (operator.type == PLUS && left instanceof CharSequence && right instanceof CharSequence) {
+            push(concat(left, right));
+            return null;
+        }
+
+        var leftNum = requireDouble(operator, left);
+        var rightNum = requireDouble(operator, right);
+        switch (operator.type) {
+            case MINUS: push(leftNum - rightNum); break;
+            case PLUS: push(leftNum + rightNum); break;
+            case SLASH: push(leftNum / rightNum); break;
+            case STAR: push(leftNum * rightNum); break;
+            case GREATER: push(leftNum > rightNum); break;
+            case GREATER_EQUAL: push(leftNum >= rightNum); break;
+            case LESS: push(leftNum < rightNum); break;
+            case LESS_EQUAL: push(leftNum <= rightNum); break;
+            default: throw new IllegalStateException("Not a binary operator " + operator.lexeme);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        // Its value is the one its expression left on the stack
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        push(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        var operand = pop();
+        if (expr.operator.type == BANG) {
+            push(!isTruthy(operand));
+        } else {
+            push(-requireDouble(expr.operator, operand));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth < 0) {
+            push(globals.get(expr.slot, expr.name));
+        } else {
+            push(environment.get(expr.depth, expr.slot));
+        }
+        return null;
+    }
+
+    private void push(Object value) {
+        if (size == operands.length) {
+            operands = Arrays.copyOf(operands, size * 2);
+        }
+        operands[size++] = value;
+    }
+
+    private Object pop() {
+        var value = operands[--size];
+        operands[size] = null;
+        return value;
+    }
+
+    private static double requireDouble(Token operator, Object operand) {
+        if (operand instanceof Double) {
+            return (double) operand;
+        }
+        throw new RuntimeError(operator, operandError(operator.type == PLUS));
+    }
+}
@@ -9,6 +9,7 @@ abstract class Stmt {
         R visitPrintStmt(Print stmt);
         R visitVarStmt(Var stmt);
         R visitIfStmtStmt(IfStmt stmt);
+        R visitWhileStmt(While stmt);
     }
 
     abstract <R> R accept(Visitor<R> visitor);
@@ -24,6 +25,8 @@ abstract class Stmt {
         }
 
         List<Stmt> statements;
+
+        int slots;
     }
 
     static class Expression extends Stmt {
@@ -65,6 +68,9 @@ abstract class Stmt {
 
         Token name;
         Expr initializer;
+
+        int depth = -1;
+        int slot = -1;
     }
 
     static class IfStmt extends Stmt {
@@ -84,4 +90,19 @@ abstract class Stmt {
         Stmt elseBranch;
     }
 
+    static class While extends Stmt {
+        While(Expr condition, Stmt body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitWhileStmt(this);
+        }
+
+        Expr condition;
+        Stmt body;
+    }
+
 }
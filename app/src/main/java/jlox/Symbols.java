@@ -0,0 +1,121 @@
+package jlox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+    Interns identifier names, so every occurrence of a name in a program is the same String.
+
+    Lookups take the name as a range of the source, hashed and compared in place, so
+    a name that has been seen before costs no allocation at all. The hash is computed
+    the way String.hashCode() does it, and each new symbol's hash is cached in the String
+    right away, so maps keyed by names never hash them again and find them by identity.
+
+    Not thread safe; every scanner has its own table.
+ */
+class Symbols {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Open addressing, capacity a power of two, kept at most half full
+    private String[] symbols = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    String intern(String source, int start, int length) {
+        var hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        var mask = symbols.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            var symbol = symbols[slot];
+            if (symbol == null) {
+                return add(slot, source.substring(start, start + length));
+            }
+            if (hashes[slot] == hash && symbol.length() == length && source.regionMatches(start, symbol, 0, length)) {
+                return symbol;
+            }
+        }
+    }
+
+    // Identifiers are ASCII, so their bytes hash and compare just like their chars
+    String intern(ByteBuffer source, int start, int length) {
+        var hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source.get(i);
+        }
+
+        var mask = symbols.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            var symbol = symbols[slot];
+            if (symbol == null) {
+                var bytes = new byte[length];
+                source.get(start, bytes);
+                return add(slot, new String(bytes, StandardCharsets.US_ASCII));
+            }
+            if (hashes[slot] == hash && symbol.length() == length && matches(source, start, symbol)) {
+                return symbol;
+            }
+        }
+    }
+
+    // For names that already are Strings, e.g. ones interned by another table
+    String intern(String name) {
+        var hash = name.hashCode();
+        var mask = symbols.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            var symbol = symbols[slot];
+            if (symbol == null) {
+                return add(slot, name);
+            }
+            if (symbol == name || hashes[slot] == hash && symbol.equals(name)) {
+                return symbol;
+            }
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    private String add(int slot, String symbol) {
+        // Caches the hash in the String itself
+        var hash = symbol.hashCode();
+        symbols[slot] = symbol;
+        hashes[slot] = hash;
+        if (++count * 2 > symbols.length) {
+            grow();
+        }
+        return symbol;
+    }
+
+    private void grow() {
+        var oldSymbols = symbols;
+        var oldHashes = hashes;
+        symbols = new String[oldSymbols.length * 2];
+        hashes = new int[oldSymbols.length * 2];
+
+        var mask = symbols.length - 1;
+        for (int i = 0; i < oldSymbols.length; i++) {
+            if (oldSymbols[i] == null) continue;
+
+            var slot = spread(oldHashes[i]) & mask;
+            while (symbols[slot] != null) slot = (slot + 1) & mask;
+            symbols[slot] = oldSymbols[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    private static boolean matches(ByteBuffer source, int start, String symbol) {
+        for (int i = 0; i < symbol.length(); i++) {
+            if (source.get(start + i) != symbol.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Mixes the high bits into the low ones the mask keeps, same as HashMap does
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,180 @@
+package jlox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    The Scanner's output, kept as parallel arrays instead of a Token object per lexeme.
+
+    A token is just an index: its type, where its lexeme starts in the source and how long it is,
+    its line, and an index into the literal table (-1 if it has none). Lexemes aren't copied out
+    of the source until somebody asks for them, which in practice means tokens that end up
+    in the AST or in an error message.
+
+    An identifier's literal slot holds its interned name instead, which then is its lexeme.
+
+    Offsets are whatever the scanner counts in: chars of a String, or bytes for ByteScanner.
+ */
+class TokenBuffer {
+    // Cuts a lexeme out of the source, by its offset and length
+    interface Lexemes {
+        String text(int start, int length);
+    }
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final byte IDENTIFIER_TYPE = (byte) TokenType.IDENTIFIER.ordinal();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Lexemes source;
+    private int count = 0;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] literalIndices = new int[INITIAL_CAPACITY];
+
+    private Object[] literals = new Object[16];
+    private int literalCount = 0;
+
+    TokenBuffer(String source) {
+        this((start, length) -> source.substring(start, start + length));
+    }
+
+    TokenBuffer(Lexemes source) {
+        this.source = source;
+    }
+
+    void add(TokenType type, int start, int length, int line, Object literal) {
+        if (count == types.length) grow();
+
+        types[count] = (byte) type.ordinal();
+        starts[count] = start;
+        lengths[count] = length;
+        lines[count] = line;
+        literalIndices[count] = literal == null ? -1 : addLiteral(literal);
+        count++;
+    }
+
+    // Appends other's first count tokens, moving them lineOffset lines down
+    void append(TokenBuffer other, int count, int lineOffset) {
+        while (this.count + count > types.length) grow();
+        var literalOffset = literalCount;
+        for (int i = 0; i < other.literalCount; i++) {
+            addLiteral(other.literals[i]);
+        }
+
+        System.arraycopy(other.types, 0, types, this.count, count);
+        System.arraycopy(other.starts, 0, starts, this.count, count);
+        System.arraycopy(other.lengths, 0, lengths, this.count, count);
+        for (int i = 0; i < count; i++) {
+            lines[this.count + i] = other.lines[i] + lineOffset;
+            var literalIndex = other.literalIndices[i];
+            literalIndices[this.count + i] = literalIndex < 0 ? -1 : literalIndex + literalOffset;
+        }
+        this.count += count;
+    }
+
+    int size() {
+        return count;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    int line(int index) {
+        return lines[index];
+    }
+
+    String lexeme(int index) {
+        var literalIndex = literalIndices[index];
+        if (literalIndex >= 0 && types[index] == IDENTIFIER_TYPE) {
+            return (String) literals[literalIndex];
+        }
+        return source.text(starts[index], lengths[index]);
+    }
+
+    Object literal(int index) {
+        var literalIndex = literalIndices[index];
+        return literalIndex < 0 || types[index] == IDENTIFIER_TYPE ? null : literals[literalIndex];
+    }
+
+    // Replaces every identifier's name with the one symbols has; for merging buffers scanned with different tables
+    void intern(Symbols symbols) {
+        for (int i = 0; i < count; i++) {
+            var literalIndex = literalIndices[i];
+            if (literalIndex >= 0 && types[i] == IDENTIFIER_TYPE) {
+                literals[literalIndex] = symbols.intern((String) literals[literalIndex]);
+            }
+        }
+    }
+
+    // Materializes a single token, a new object on every call
+    Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), line(index));
+    }
+
+    TokenStream stream() {
+        return new TokenStream() {
+            private int current = 0;
+
+            @Override
+            public void advance() {
+                current++;
+            }
+
+            @Override
+            public TokenType peekType() {
+                return type(current);
+            }
+
+            @Override
+            public TokenType previousType() {
+                return type(current - 1);
+            }
+
+            @Override
+            public Token peek() {
+                return token(current);
+            }
+
+            @Override
+            public Token previous() {
+                return token(current - 1);
+            }
+
+            @Override
+            public Object previousLiteral() {
+                return literal(current - 1);
+            }
+        };
+    }
+
+    // Materializes every token; meant for tests and debugging, not the hot path
+    List<Token> toList() {
+        var tokens = new ArrayList<Token>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+
+    private int addLiteral(Object literal) {
+        if (literalCount == literals.length) {
+            literals = Arrays.copyOf(literals, literalCount * 2);
+        }
+        literals[literalCount] = literal;
+        return literalCount++;
+    }
+
+    private void grow() {
+        var capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        literalIndices = Arrays.copyOf(literalIndices, capacity);
+    }
+}
@@ -0,0 +1,23 @@
+package jlox;
+
+/*
+    What the Parser reads tokens from: a window over the current token and the one
+    before it, moved forward one token at a time. That's all the lookahead the grammar needs.
+
+    Tokens only become objects when asked for, so whoever provides the stream is free to
+    keep them in whatever form it likes, or to not keep them at all.
+ */
+interface TokenStream {
+    // Moves the window forward; never called once the current token is EOF
+    void advance();
+
+    TokenType peekType();
+
+    TokenType previousType();
+
+    Token peek();
+
+    Token previous();
+
+    Object previousLiteral();
+}
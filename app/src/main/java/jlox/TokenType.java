@@ -1,7 +1,5 @@
 package jlox;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 public enum TokenType {
@@ -22,28 +20,57 @@ public enum TokenType {
 
     EOF;
 
-    private final static Map<String, TokenType> keywords = new HashMap<>(32);
-
-    static {
-        keywords.put("and",    AND);
-        keywords.put("class",  CLASS);
-        keywords.put("else",   ELSE);
-        keywords.put("false",  FALSE);
-        keywords.put("fun",    FUN);
-        keywords.put("for",    FOR);
-        keywords.put("if",     IF);
-        keywords.put("nil",    NIL);
-        keywords.put("or",     OR);
-        keywords.put("print",  PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super",  SUPER);
-        keywords.put("this",   THIS);
-        keywords.put("true",   TRUE);
-        keywords.put("var",    VAR);
-        keywords.put("while",  WHILE);
+    public static Optional<TokenType> getKeyword(String word) {
+        var type = keyword(word, 0, word.length());
+        return type == IDENTIFIER ? Optional.empty() : Optional.of(type);
     }
 
-    public static Optional<TokenType> getKeyword(String word) {
-        return Optional.ofNullable(keywords.get(word));
+    /*
+        The keyword spelled by source's start..start+length range, or IDENTIFIER if it isn't one.
+        Dispatches on length and first char, which leaves at most two candidates,
+        and compares the rest of the range in place, so nothing is allocated.
+     */
+    static TokenType keyword(String source, int start, int length) {
+        if (length < 2 || length > 6) return IDENTIFIER;
+
+        var first = source.charAt(start);
+        switch (length) {
+            case 2:
+                if (first == 'i') return rest(source, start, "if", IF);
+                if (first == 'o') return rest(source, start, "or", OR);
+                break;
+            case 3:
+                if (first == 'a') return rest(source, start, "and", AND);
+                if (first == 'f') {
+                    return source.charAt(start + 1) == 'u' ? rest(source, start, "fun", FUN)
+                            : rest(source, start, "for", FOR);
+                }
+                if (first == 'n') return rest(source, start, "nil", NIL);
+                if (first == 'v') return rest(source, start, "var", VAR);
+                break;
+            case 4:
+                if (first == 'e') return rest(source, start, "else", ELSE);
+                if (first == 't') {
+                    return source.charAt(start + 1) == 'h' ? rest(source, start, "this", THIS)
+                            : rest(source, start, "true", TRUE);
+                }
+                break;
+            case 5:
+                if (first == 'c') return rest(source, start, "class", CLASS);
+                if (first == 'f') return rest(source, start, "false", FALSE);
+                if (first == 'p') return rest(source, start, "print", PRINT);
+                if (first == 's') return rest(source, start, "super", SUPER);
+                if (first == 'w') return rest(source, start, "while", WHILE);
+                break;
+            case 6:
+                if (first == 'r') return rest(source, start, "return", RETURN);
+                break;
+        }
+        return IDENTIFIER;
+    }
+
+    // The first char already matched
+    private static TokenType rest(String source, int start, String keyword, TokenType type) {
+        return source.regionMatches(start + 1, keyword, 1, keyword.length() - 1) ? type : IDENTIFIER;
     }
 }
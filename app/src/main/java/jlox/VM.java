@@ -0,0 +1,173 @@
+package jlox;
+
+import java.util.List;
+
+import static jlox.OpCode.*;
+import static jlox.Values.*;
+
+/*
+    Stack based virtual machine running the output of BytecodeCompiler.
+    Selected with --engine=vm; has to behave exactly like the Interpreter.
+ */
+class VM implements Executor {
+    private final Globals globals = new Globals();
+    private final Output out;
+    private final Diagnostics diagnostics;
+
+    VM(Output out, Diagnostics diagnostics) {
+        this.out = out;
+        this.diagnostics = diagnostics;
+    }
+
+    @Override
+    public void interpret(List<Stmt> statements) {
+        Chunk chunk;
+        try {
+            chunk = new BytecodeCompiler(diagnostics).compile(statements);
+        } catch (BytecodeCompiler.CompileError e) {
+            return;
+        }
+
+        try {
+            run(chunk);
+        } catch (RuntimeError e) {
+            diagnostics.runtimeError(e);
+        }
+    }
+
+    private void run(Chunk chunk) {
+        var code = chunk.code();
+        var constants = chunk.constants();
+        var locals = new Object[chunk.maxLocals];
+        var stack = new Object[chunk.maxStack];
+        var top = 0;
+        var ip = 0;
+
+        for (; ; ) {
+            var opStart = ip;
+            switch (code[ip++]) {
+                case CONSTANT:
+                    stack[top++] = constants[readShort(code, ip)];
+                    ip += 2;
+                    break;
+                case NIL: stack[top++] = null; break;
+                case TRUE: stack[top++] = true; break;
+                case FALSE: stack[top++] = false; break;
+                case POP: stack[--top] = null; break;
+                case GET_LOCAL:
+                    stack[top++] = locals[readShort(code, ip)];
+                    ip += 2;
+                    break;
+                case SET_LOCAL:
+                    locals[readShort(code, ip)] = stack[top - 1];
+                    ip += 2;
+                    break;
+                case DEFINE_GLOBAL:
+                    globals.define(readShort(code, ip), stack[--top]);
+                    stack[top] = null;
+                    ip += 2;
+                    break;
+                case GET_GLOBAL:
+                    stack[top++] = globals.get(readShort(code, ip), (Token) constants[readShort(code, ip + 2)]);
+                    ip += 4;
+                    break;
+                case SET_GLOBAL:
+                    globals.assign(readShort(code, ip), (Token) constants[readShort(code, ip + 2)], stack[top - 1]);
+                    ip += 4;
+                    break;
+                case EQUAL: {
+                    var right = stack[--top];
+                    stack[top - 1] = isEqual(stack[top - 1], right);
+                    break;
+                }
+                case GREATER: {
+                    var right = stack[--top];
+                    var leftNum = number(chunk, opStart, stack[top - 1], false);
+                    stack[top - 1] = leftNum > number(chunk, opStart, right, false);
+                    break;
+                }
+                case GREATER_EQUAL: {
+                    var right = stack[--top];
+                    var leftNum = number(chunk, opStart, stack[top - 1], false);
+                    stack[top - 1] = leftNum >= number(chunk, opStart, right, false);
+                    break;
+                }
+                case LESS: {
+                    var right = stack[--top];
+                    var leftNum = number(chunk, opStart, stack[top - 1], false);
+                    stack[top - 1] = leftNum < number(chunk, opStart, right, false);
+                    break;
+                }
+                case LESS_EQUAL: {
+                    var right = stack[--top];
+                    var leftNum = number(chunk, opStart, stack[top - 1], false);
+                    stack[top - 1] = leftNum <= number(chunk, opStart, right, false);
+                    break;
+                }
+                case ADD: {
+                    var right = stack[--top];
+                    var left = stack[top - 1];
+                    if (left instanceof CharSequence && right instanceof CharSequence) {
+                        stack[top - 1] = concat(left, right);
+                    } else {
+                        // Left operand is checked first, same as the Interpreter
+                        var leftNum = number(chunk, opStart, left, true);
+                        stack[top - 1] = leftNum + number(chunk, opStart, right, true);
+                    }
+                    break;
+                }
+                case SUBTRACT: {
+                    var right = stack[--top];
+                    var leftNum = number(chunk, opStart, stack[top - 1], false);
+                    stack[top - 1] = leftNum - number(chunk, opStart, right, false);
+                    break;
+                }
+                case MULTIPLY: {
+                    var right = stack[--top];
+                    var leftNum = number(chunk, opStart, stack[top - 1], false);
+                    stack[top - 1] = leftNum * number(chunk, opStart, right, false);
+                    break;
+                }
+                case DIVIDE: {
+                    var right = stack[--top];
+                    var leftNum = number(chunk, opStart, stack[top - 1], false);
+                    stack[top - 1] = leftNum / number(chunk, opStart, right, false);
+                    break;
+                }
+                case NOT: stack[top - 1] = !isTruthy(stack[top - 1]); break;
+                case NEGATE: stack[top - 1] = -number(chunk, opStart, stack[top - 1], false); break;
+                case PRINT:
+                    out.print(stack[--top]);
+                    stack[top] = null;
+                    break;
+                case JUMP:
+                    ip += 2 + readShort(code, ip);
+                    break;
+                case JUMP_IF_FALSE: {
+                    var condition = stack[--top];
+                    stack[top] = null;
+                    ip += isTruthy(condition) ? 2 : 2 + readShort(code, ip);
+                    break;
+                }
+                case LOOP:
+                    ip += 2 - readShort(code, ip);
+                    break;
+                case RETURN:
+                    return;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[opStart] + " at " + opStart);
+            }
+        }
+    }
+
+    private static int readShort(byte[] code, int ip) {
+        return ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+    }
+
+    private static double number(Chunk chunk, int opStart, Object operand, boolean isPlus) {
+        if (operand instanceof Double) {
+            return (double) operand;
+        }
+        throw new RuntimeError(chunk.lineAt(opStart), operandError(isPlus));
+    }
+}
@@ -0,0 +1,48 @@
+package jlox;
+
+/*
+    Lox value semantics shared by every execution engine, so that they all agree
+    on what is truthy, what is equal and how values get printed.
+
+    A Lox string is any CharSequence: a String, as string literals are, or a Rope,
+    as long concatenations are. Engines tell strings apart with instanceof CharSequence
+    and concatenate them with concat, never with Java's own +.
+ */
+final class Values {
+  private Values() {}
+
+  // Ruby-style: false and nil are falsy, everything else is truthy
+  static boolean isTruthy(Object o) {
+    if (o == null) return false;
+    if (o instanceof Boolean) return (boolean) o;
+    return true;
+  }
+
+  static boolean isEqual(Object a, Object b) {
+    if (a == null && b == null) return true;
+    if (a == null) return false;
+    if (a instanceof Rope || b instanceof Rope) {
+      return a instanceof CharSequence && b instanceof CharSequence && a.toString().equals(b.toString());
+    }
+    return a.equals(b);
+  }
+
+  // Both operands have to be strings
+  static CharSequence concat(Object left, Object right) {
+    return Rope.concat((CharSequence) left, (CharSequence) right);
+  }
+
+  static String stringify(Object value) {
+    if (value == null) return "nil";
+
+    if (value instanceof Double) {
+      return DoubleFormatter.toString((double) value);
+    }
+
+    return value.toString();
+  }
+
+  static String operandError(boolean isPlus) {
+    return "Operand must be a number" + (isPlus ? " or a string" : "");
+  }
+}
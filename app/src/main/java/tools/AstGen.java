@@ -19,20 +19,21 @@ public class AstGen {
         //String outputDir = "C:\\stuff\\java\\jlox\\app\\src\\main\\java\\jlox";
 
         defineAst(outputDir, "Expr", Arrays.asList(
-                "Assign   : Token name, Expr value",
-                "Binary   : Expr left, Token operator, Expr right",
+                "Assign   : Token name, Expr value : int depth = -1, int slot = -1",
+                "Binary   : Expr left, Token operator, Expr right : boolean numeric",
                 "Grouping : Expr expression",
                 "Literal  : Object value",
                 "Unary    : Token operator, Expr right",
-                "Variable : Token name"
+                "Variable : Token name : int depth = -1, int slot = -1"
         ));
 
         defineAst(outputDir, "Stmt", Arrays.asList(
-            "Block      : List<Stmt> statements",
+            "Block      : List<Stmt> statements : int slots",
             "Expression : Expr expression",
             "Print      : Expr expression",
-            "Var        : Token name, Expr initializer",
-            "IfStmt     : Expr condition, Stmt thenBranch, Stmt elseBranch"
+            "Var        : Token name, Expr initializer : int depth = -1, int slot = -1",
+            "IfStmt     : Expr condition, Stmt thenBranch, Stmt elseBranch",
+            "While      : Expr condition, Stmt body"
         ));
     }
 
@@ -58,7 +59,9 @@ public class AstGen {
                     Arrays.stream(type.split(":"))
                             .map(String::trim)
                             .toArray(String[]::new);
-            defineType(pw, baseName, defs[0], defs[1]);
+            // Optional third section lists fields filled in by later passes (e.g. Resolver)
+            var annotations = defs.length > 2 ? defs[2] : null;
+            defineType(pw, baseName, defs[0], defs[1], annotations);
             pw.println();
         }
         pw.println("}");
@@ -79,7 +82,7 @@ public class AstGen {
     }
 
     private static void defineType(PrintWriter pw, String baseName,
-                                   String className, String fieldList) {
+                                   String className, String fieldList, String annotationList) {
         var fields = fieldList.split(", ");
 
         pw.println(indent + "static class " + className + " extends " + baseName + " {");
@@ -100,6 +103,12 @@ public class AstGen {
         for (var field : fields) {
             pw.println(indent.repeat(2) + field + ";");
         }
+        if (annotationList != null) {
+            pw.println();
+            for (var annotation : annotationList.split(", ")) {
+                pw.println(indent.repeat(2) + annotation + ";");
+            }
+        }
         pw.println(indent + "}");
     }
 }
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import static jlox.TestVisitors.BasicExprVisitor;
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class BinaryExpressionParserTest extends ParserTestBase {
 
@@ -73,6 +74,33 @@ public class BinaryExpressionParserTest extends ParserTestBase {
         assertBinaryWithLiterals(result, 997d, TokenType.LESS_EQUAL, false);
     }
 
+    @Test
+    @DisplayName("Operators bind by precedence and associate to the left")
+    void testPrecedenceAndAssociativity() {
+        var softly = new SoftAssertions();
+        softly.assertThat(printed("1 + 2 * 3 - 4;")).isEqualTo("(- (+ 1.0 (* 2.0 3.0)) 4.0)");
+        softly.assertThat(printed("1 - 2 - 3;")).isEqualTo("(- (- 1.0 2.0) 3.0)");
+        softly.assertThat(printed("8 / 4 / 2 * 3;")).isEqualTo("(* (/ (/ 8.0 4.0) 2.0) 3.0)");
+        softly.assertThat(printed("1 < 2 == 3 >= 4 != true;")).isEqualTo("(!= (== (< 1.0 2.0) (>= 3.0 4.0)) true)");
+        softly.assertThat(printed("-1 * -(2 + 3);")).isEqualTo("(* (- 1.0) (- (group (+ 2.0 3.0))))");
+        softly.assertThat(printed("!!true == !false;")).isEqualTo("(== (! (! true)) (! false))");
+        softly.assertAll();
+    }
+
+    @Test
+    @DisplayName("A missing operand is reported at the token found instead")
+    void testMissingOperand() {
+        var err = setNewErr();
+        parse("1 + ;");
+
+        assertThat(diagnostics.hadError()).isTrue();
+        assertThat(err.toString()).isEqualTo("[line 1] Error at ';': Expected an expression\n");
+    }
+
+    private String printed(String source) {
+        return new AstPrinter().print(getExpression(parseSingleStatement(source)));
+    }
+
     private static void assertBinaryWithLiterals(
             Stmt stmt,
             Object leftLiteral,
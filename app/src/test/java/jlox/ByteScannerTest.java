@@ -0,0 +1,59 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ByteScannerTest {
+
+    @Test
+    @DisplayName("Same tokens and errors as the Scanner")
+    void testSameAsScanner() {
+        assertSameAsScanner("var a = 1; print a >= 2 != !true; // comment\n{ a = a / 3 * -4; }");
+        assertSameAsScanner("and class else false fun for if nil or print return super this true var while");
+        assertSameAsScanner("andy classes elsewhere _if if_ i f fo fun_ PRINT Var");
+        assertSameAsScanner("print \"zażółć\ngęślą jaźń\"; \"\" \"😀\"");
+        assertSameAsScanner("a @ # é 😀 b\n  \t\r\n^");
+        assertSameAsScanner("print \"never ends\n");
+        assertSameAsScanner("1 1.5 1. .5 0.25 007 3.14159 12345678901234567890 0.1000000000000000055511151231257827");
+        assertSameAsScanner("a/b//c\n/");
+        assertSameAsScanner("");
+    }
+
+    @Test
+    @DisplayName("Numbers converted in place are the values parseDouble gives")
+    void testNumbers() {
+        var random = new Random(42);
+        var source = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            var digits = 1 + random.nextInt(17);
+            var decimals = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(20);
+            for (int d = 0; d < digits; d++) source.append((char) ('0' + random.nextInt(10)));
+            if (decimals > 0) {
+                source.append('.');
+                for (int d = 0; d < decimals; d++) source.append((char) ('0' + random.nextInt(10)));
+            }
+            source.append('\n');
+        }
+
+        assertSameAsScanner(source.toString());
+    }
+
+    private static void assertSameAsScanner(String source) {
+        var expectedErr = new ByteArrayOutputStream();
+        var expected = new Scanner(source, new Diagnostics(new PrintStream(expectedErr, true))).scan().toList();
+
+        var actualErr = new ByteArrayOutputStream();
+        var bytes = source.getBytes(StandardCharsets.UTF_8);
+        var actual = new ByteScanner(bytes, new Diagnostics(new PrintStream(actualErr, true))).scan().toList();
+
+        assertThat(actual).as(source).isEqualTo(expected);
+        assertThat(actualErr.toString(StandardCharsets.UTF_8)).as(source).isEqualTo(expectedErr.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,121 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    Expressions far deeper than recursion survives, compiled and run in stack mode
+    on a thread with a small stack.
+ */
+public class DeepExpressionTest extends ParserTestBase {
+    private static final int DEPTH = 100_000;
+    private static final long STACK_SIZE = 256 * 1024;
+
+    @Test
+    @DisplayName("A long chain of binary operators")
+    void testLongOperatorChain() {
+        var source = "print 1" + " + 1".repeat(DEPTH - 1) + ";\nprint 0" + " == 0".repeat(DEPTH) + ";";
+        assertThat(runOnSmallStack(source, false)).isEqualTo("100000\nfalse\n");
+        assertThat(runOnSmallStack(source, true)).isEqualTo("100000\nfalse\n");
+    }
+
+    @Test
+    @DisplayName("Deeply nested groupings and prefix operators")
+    void testDeepNesting() {
+        var source = "print " + "(".repeat(DEPTH) + "2 * 3" + ")".repeat(DEPTH) + ";\n"
+                + "print " + "-".repeat(DEPTH + 1) + "1;\n"
+                + "print " + "!".repeat(DEPTH) + "nil;\n"
+                + "print " + "(-".repeat(DEPTH) + "\"a\"" + ")".repeat(DEPTH) + ";";
+        assertThat(runOnSmallStack(source, false)).isEqualTo("6\n-1\nfalse\nOperand must be a number\n[line 4]\n");
+    }
+
+    @Test
+    @DisplayName("A long chain of assignments, right associative")
+    void testLongAssignmentChain() {
+        var source = "var a; var b;\n{ var c; " + "a = b = c = ".repeat(DEPTH / 3) + "\"x\"; print a + b + c; }";
+        assertThat(runOnSmallStack(source, false)).isEqualTo("xxx\n");
+    }
+
+    @Test
+    @DisplayName("Errors inside deep expressions are reported where they are")
+    void testErrorsInDeepExpressions() {
+        var source = "print " + "(1 + ".repeat(DEPTH) + "1" + ")".repeat(DEPTH - 1) + ";\n"
+                + "1 + 2 = " + "3 + ".repeat(DEPTH) + "4;";
+        assertThat(runOnSmallStack(source, false)).isEqualTo(
+                "[line 1] Error at ';': Expected ')' to close grouping expression\n"
+                + "[line 2] Error at ';': Invalid assignment target\n");
+    }
+
+    @Test
+    @DisplayName("Deep expressions round trip through the parse cache")
+    void testDeepExpressionsEncode() {
+        var program = parse("var a = " + "-(a + ".repeat(DEPTH) + "1" + ")".repeat(DEPTH) + ";");
+        var encoded = onSmallStack(() -> AstCodec.encode(program));
+
+        var decoded = onSmallStack(() -> AstCodec.decode(ByteBuffer.wrap(encoded)));
+        assertThat(onSmallStack(() -> AstCodec.encode(decoded))).isEqualTo(encoded);
+    }
+
+    @Test
+    @DisplayName("A deep script runs from the cache too")
+    void testDeepScriptFromCache(@TempDir Path directory) throws Exception {
+        var script = directory.resolve("deep.lox");
+        Files.writeString(script, "print " + "(".repeat(DEPTH) + "1 - 3" + ")".repeat(DEPTH) + ";");
+        var engine = new LoxEngine(LoxEngine.Kind.STACK, false, directory.resolve("cache"));
+
+        for (int run = 0; run < 2; run++) {
+            var output = onSmallStack(() -> {
+                var out = new ByteArrayOutputStream();
+                var stream = new PrintStream(out, true, StandardCharsets.UTF_8);
+                try {
+                    engine.newContext(stream, stream).runFile(script);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return out.toString(StandardCharsets.UTF_8);
+            });
+            assertThat(output).isEqualTo("-2\n");
+        }
+    }
+
+    private static String runOnSmallStack(String source, boolean optimize) {
+        return onSmallStack(() -> {
+            var out = new ByteArrayOutputStream();
+            var stream = new PrintStream(out, true, StandardCharsets.UTF_8);
+            new LoxEngine(LoxEngine.Kind.STACK, optimize).newContext(stream, stream).run(source);
+            return out.toString(StandardCharsets.UTF_8);
+        });
+    }
+
+    private static <T> T onSmallStack(Supplier<T> task) {
+        var result = new AtomicReference<T>();
+        var failure = new AtomicReference<Throwable>();
+        var thread = new Thread(null, () -> {
+            try {
+                result.set(task.get());
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "small-stack", STACK_SIZE);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        assertThat(failure.get()).as("Failure on a small stack").isNull();
+        return result.get();
+    }
+}
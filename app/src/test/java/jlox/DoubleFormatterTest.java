@@ -0,0 +1,78 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DoubleFormatterTest {
+    @Test
+    @DisplayName("Integral values print without a fraction, and without an exponent however large")
+    void testIntegralValues() {
+        assertThat(DoubleFormatter.toString(42.0)).isEqualTo("42");
+        assertThat(DoubleFormatter.toString(-7.0)).isEqualTo("-7");
+        assertThat(DoubleFormatter.toString(0.0)).isEqualTo("0");
+        assertThat(DoubleFormatter.toString(-0.0)).isEqualTo("-0");
+        assertThat(DoubleFormatter.toString(9007199254740991.0)).isEqualTo("9007199254740991");
+        assertThat(DoubleFormatter.toString(1e23)).isEqualTo("100000000000000000000000");
+        assertThat(DoubleFormatter.toString(Math.pow(2, 60))).isEqualTo("1152921504606847000");
+    }
+
+    @Test
+    @DisplayName("Fractions keep every digit they need, and no more")
+    void testFractions() {
+        assertThat(DoubleFormatter.toString(2.5)).isEqualTo("2.5");
+        assertThat(DoubleFormatter.toString(0.1)).isEqualTo("0.1");
+        assertThat(DoubleFormatter.toString(0.1 + 0.2)).isEqualTo("0.30000000000000004");
+        assertThat(DoubleFormatter.toString(1.0 / 3)).isEqualTo("0.3333333333333333");
+        assertThat(DoubleFormatter.toString(-123456.789)).isEqualTo("-123456.789");
+        assertThat(DoubleFormatter.toString(1.5e-7)).isEqualTo("0.00000015");
+        assertThat(DoubleFormatter.toString(Double.MIN_VALUE)).isEqualTo("0." + "0".repeat(323) + "5");
+    }
+
+    @Test
+    @DisplayName("Infinities and NaN")
+    void testSpecialValues() {
+        assertThat(DoubleFormatter.toString(Double.POSITIVE_INFINITY)).isEqualTo("Infinity");
+        assertThat(DoubleFormatter.toString(Double.NEGATIVE_INFINITY)).isEqualTo("-Infinity");
+        assertThat(DoubleFormatter.toString(Double.NaN)).isEqualTo("NaN");
+    }
+
+    @Test
+    @DisplayName("Any double prints as its shortest decimal that parses back to it")
+    void testShortestRoundTrip() {
+        var random = new Random(20);
+        for (int i = 0; i < 100_000; i++) {
+            var value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(value) || Double.isInfinite(value)) continue;
+
+            var printed = DoubleFormatter.toString(value);
+            assertThat(Double.parseDouble(printed)).as(printed).isEqualTo(value);
+            assertThat(new BigDecimal(printed)).as(printed).isEqualByComparingTo(shortest(value));
+        }
+    }
+
+    @Test
+    @DisplayName("Appends to what is already in the buffer")
+    void testAppends() {
+        var sb = new StringBuilder("x = ");
+        DoubleFormatter.format(0.05, sb);
+        sb.append(", y = ");
+        DoubleFormatter.format(12.0, sb);
+        assertThat(sb).hasToString("x = 0.05, y = 12");
+    }
+
+    // The exact value rounded to the fewest significant digits that still parse back to it
+    private static BigDecimal shortest(double value) {
+        var exact = new BigDecimal(value);
+        for (int digits = 1; ; digits++) {
+            var rounded = exact.round(new MathContext(digits, RoundingMode.HALF_EVEN));
+            if (Double.parseDouble(rounded.toString()) == value) return rounded;
+        }
+    }
+}
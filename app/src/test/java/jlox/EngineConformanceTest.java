@@ -0,0 +1,125 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+    Every engine has to print exactly what the tree walking Interpreter prints,
+    runtime errors included.
+ */
+public class EngineConformanceTest {
+    private static final List<String> programs = List.of(
+            // The parser test programs
+            "-1;", "0;", "1 + 2;", "1.5 + 2.1;", "2147483647;", "997 <= false;", "\"\";",
+            "\"abc\" != nil;", "\"abc\" == \"def\";", "\"abc\">false;", "\"this is a test string\";",
+            "false;", "nil;", "true;", "true < 654;", "true>=\"zażółć gęślą jaźń\";",
+            "itsABoolean = !true;", "justAVariable = \"a string\";", "testVariable = 1 + 2;",
+            "testVariable2 = 1 * 2;",
+            // ... and what they evaluate to
+            "print -1; print 0; print 1 + 2; print 1.5 + 2.1; print 2147483647;",
+            "print \"\"; print \"abc\" != nil; print \"abc\" == \"def\"; print \"this is a test string\";",
+            "print false; print nil; print true; print !true; print 1 * 2;",
+            "print 997 <= false;", "print \"abc\" > false;", "print true < 654;",
+            "print -\"abc\";", "print \"a\" + 1;", "print 1 + \"a\";", "print \"a\" - \"b\";",
+            // Variables and scopes
+            "var a = 1; var b = a; if (b < 2) { print \"less\"; }",
+            "var a = 1; { var a = a + 1; print a; { var b = a * 10; a = b; } print a; } print a;",
+            "var a; print a; a = \"x\"; print a; var a = 3; print a;",
+            "{ var a = 1; var a = a + 1; print a; }",
+            "{ var n; print n; }",
+            "var x = 1;\n{\n  print x;\n  var x = 2;\n  print x;\n}\nprint y;",
+            "print (1 + 2) * 3 - 4 / 8; print 1 == 1; print 1 != 2; print nil == nil; print \"a\" + \"b\";",
+            "if (nil) print 1; else print 2; if (0) print 3; if (false) { print 4; }",
+            "var t = 0; if (t == 0) if (t != 0) print \"inner\"; else print \"dangling\";",
+            "print 10 / 4; print 1 / 3; print -0; print 1 / 0;",
+            "print -(1/0);", "print 0/0;", "{ var x = -1/0; print x * 2; var y = 0/0; print y == y; }",
+            "var a = 1;\nprint a;\nprint undefinedVariable;\nprint \"not reached\";",
+            "{ var a = 1; { { var a = a + 1; { print a; } } { var b = a; print b; var a = 3; print a + b; } } print a; }",
+            "{ { { print \"no frame\"; } } var x; { x = 2; { var y = x * x; x = y; } } print x; }",
+            // Constant folding and propagation
+            "var k = 2; { var j = k * 3; print j + 1; j = 0; print j; } print k;",
+            "if (1 < 2) print \"yes\"; else print \"no\"; if (!true) print \"never\";",
+            "print a; var a = 1;",
+            "var s = \"a\" + \"b\"; print s + s; print -\"str\";",
+            // Long concatenations, which make ropes
+            "var a = \"0123456789012345678901234567890123456789\"; var b = a + a; var c = b + \"x\"; var d = b + \"y\";\n"
+                    + "print c; print d; print b; print \"<\" + d; print c == b + \"x\"; print c != d; print a + a + a == b + a;\n"
+                    + "{ var e = c; e = e + e; print e; print e == c; print e + 1; }",
+            // Loops, long enough for the Interpreter to tier them up
+            "var i = 0; while (i < 3) { print i; i = i + 1; } while (false) print \"never\"; print i;",
+            "var sum = 0;\nfor (var i = 0; i < 2000; i = i + 1) {\n  var sq = i * i;\n  if (sq > 1000) sum = sum + 1; else sum = sum + sq;\n}\nprint sum;",
+            "{ var total = 0; for (var j = 0; j < 300; j = j + 1) for (var k = 0; k < 10; k = k + 1) total = total + j * k; print total; }",
+            "var n = 0; var s = \"\"; for (; n < 1500;) { { var c = n + \"\"; } s = s + \"ab\"; n = n + 1; } print s == s + \"\"; print n;",
+            "var m = 0;\nfor (;;) {\n  m = m + 1;\n  if (m > 1200) m = \"stop\";\n}\nprint \"not reached\";",
+            "{ var x = 0; var y; while (x < 1100) { x = x + 1; y = x == 1100; } print x; print y; print !y; }"
+    );
+
+    static Stream<Arguments> engines() {
+        return Stream.of(
+                engine("stack", LoxEngine.Kind.STACK),
+                engine("vm", LoxEngine.Kind.VM),
+                engine("jit", LoxEngine.Kind.JIT),
+                engine("closure", LoxEngine.Kind.CLOSURE),
+                engine("flat", LoxEngine.Kind.FLAT)
+        );
+    }
+
+    private static Arguments engine(String name, LoxEngine.Kind kind) {
+        return Arguments.of(name, kind);
+    }
+
+    @ParameterizedTest(name = "{0} prints the same as the Interpreter")
+    @MethodSource("engines")
+    void testSameOutputAsInterpreter(String name, LoxEngine.Kind kind) {
+        for (var program : programs) {
+            var expected = run(LoxEngine.Kind.TREE, program);
+
+            assertThat(run(kind, program)).as(program).isEqualTo(expected);
+            // Folding makes literals the parser never does, like -Infinity and NaN
+            assertThat(run(kind, program, true)).as("optimized " + program).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Optimized programs print the same as unoptimized ones")
+    void testOptimizerPreservesOutput() {
+        for (var program : programs) {
+            var expected = run(LoxEngine.Kind.TREE, program);
+            var actual = run(LoxEngine.Kind.TREE, program, true);
+
+            assertThat(actual).as(program).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Interpreter output sanity check")
+    void testInterpreterOutput() {
+        assertThat(run(LoxEngine.Kind.TREE, "var a = 1; { var a = a + 1; print a; } print a;"))
+                .isEqualTo("2\n1\n");
+        assertThat(run(LoxEngine.Kind.TREE, "print -\"abc\";"))
+                .isEqualTo("Operand must be a number\n[line 1]\n");
+    }
+
+    private static String run(LoxEngine.Kind kind, String source) {
+        return run(kind, source, false);
+    }
+
+    // Output and errors both go to the same stream, so their relative order is checked too
+    private static String run(LoxEngine.Kind kind, String source, boolean optimize) {
+        var out = new ByteArrayOutputStream();
+        var stream = new PrintStream(out, true);
+
+        new LoxEngine(kind, optimize).newContext(stream, stream).run(source);
+        return out.toString();
+    }
+}
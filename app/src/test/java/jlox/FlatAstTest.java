@@ -0,0 +1,85 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FlatAstTest extends ParserTestBase {
+
+    @Test
+    @DisplayName("Flat expressions print the same as their tree")
+    void testExpressionsPrintLikeTree() {
+        var sources = new String[] {
+                "1 + 2 * 3 - 4;",
+                "-(1.5 / 3) >= 2 == !true;",
+                "\"a\" + \"b\" != nil;",
+                "x < y;",
+                "false;"
+        };
+        for (var source : sources) {
+            var tree = resolve(source);
+            var flat = FlatAst.of(tree);
+
+            var expected = new AstPrinter().print(getExpression(tree.get(0)));
+            var printed = new FlatAstPrinter(flat).print(flat.a(flat.statement(0)));
+            assertThat(printed).as(source).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Statements keep their shape, nesting and order")
+    void testStatements() {
+        var flat = FlatAst.of(resolve("var a = 1;\n{ var b; b = a; { print b; } }\nif (a) print a; else a = 2;\nif (nil) {}\nwhile (a) a = nil;\n"));
+
+        assertThat(new FlatAstPrinter(flat).print()).isEqualTo(
+                "(var a 1.0)\n" +
+                "(block (var b) (; (= b a)) (block (print b)))\n" +
+                "(if a (print a) (; (= a 2.0)))\n" +
+                "(if nil (block))\n" +
+                "(while a (; (= a nil)))\n");
+    }
+
+    @Test
+    @DisplayName("Every node of the tree is one index, locals keep their resolution")
+    void testNodesAndLocals() {
+        var flat = FlatAst.of(resolve("{ var a = 1; { var b = 2; a = b; } }"));
+
+        // block, var, 1, block, var, 2, assign, variable, expression
+        assertThat(flat.size()).isEqualTo(9);
+        var inner = flat.child(flat.statement(0), 1);
+        var assign = flat.a(flat.child(inner, 1));
+        assertThat(FlatAst.depth(flat.c(assign))).isEqualTo(0);
+        assertThat(FlatAst.slot(flat.c(assign))).isEqualTo(0);
+        assertThat(FlatAst.depth(flat.c(flat.a(assign)))).isEqualTo(0);
+        assertThat(FlatAst.slot(flat.c(flat.a(assign)))).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Runtime errors are reported at the line of the failing node")
+    void testRuntimeErrorLine() {
+        var out = new ByteArrayOutputStream();
+        var stream = new PrintStream(out, true);
+        var output = Output.of(stream);
+        var interpreter = new FlatInterpreter(output, new Diagnostics(stream, output));
+
+        interpreter.interpret(resolve("print 1;\nprint \"a\" +\n 1;\nprint 2;"));
+        interpreter.interpret(resolve("print 3;\n\nprint undefined;"));
+
+        assertThat(out.toString()).isEqualTo("1\nOperand must be a number or a string\n[line 2]\n"
+                + "3\nVariable undefined is undefined\n[line 3]\n");
+    }
+
+    @Test
+    @DisplayName("Literals that can't be in a parsed tree are rejected")
+    void testUnknownLiteral() {
+        var program = List.<Stmt>of(new Stmt.Print(new Expr.Literal(1)));
+
+        assertThatThrownBy(() -> FlatAst.of(program)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,73 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GlobalsTest {
+    @Test
+    @DisplayName("Names get slots in order of first use, the same slot every time after")
+    void testSlots() {
+        var slots = new GlobalSlots();
+
+        assertThat(slots.slot("a")).isZero();
+        assertThat(slots.slot("b")).isEqualTo(1);
+        assertThat(slots.slot(new String("a"))).isZero();
+        assertThat(new GlobalSlots().slot("b")).isZero();
+    }
+
+    @Test
+    @DisplayName("Defining a variable again replaces it, assigning needs it defined")
+    void testRedefinition() {
+        var globals = new Globals();
+        var name = token("again");
+
+        assertThatThrownBy(() -> globals.get(3, name)).hasMessage("Variable again is undefined");
+        assertThatThrownBy(() -> globals.assign(3, name, 1.0)).hasMessage("Variable again is undefined");
+
+        globals.define(3, 1.0);
+        globals.define(3, "one");
+        assertThat(globals.get(3, name)).isEqualTo("one");
+        globals.define(3, null);
+        assertThat(globals.get(3, name)).isNull();
+        globals.assign(3, name, 2.0);
+        assertThat(globals.get(3, name)).isEqualTo(2.0);
+        assertThatThrownBy(() -> globals.get(2, "other", 7)).hasMessage("Variable other is undefined");
+    }
+
+    @Test
+    @DisplayName("The table grows to take any slot")
+    void testGrows() {
+        var globals = new Globals();
+        for (int i = 0; i < 1000; i += 7) {
+            globals.define(i, (double) i);
+        }
+        for (int i = 0; i < 1000; i += 7) {
+            assertThat(globals.get(i, token("many"))).isEqualTo((double) i);
+        }
+        assertThatThrownBy(() -> globals.get(1, token("many"))).isInstanceOf(RuntimeError.class);
+    }
+
+    @Test
+    @DisplayName("Programs only run in contexts of the engine that compiled them")
+    void testProgramsBelongToTheirEngine() {
+        var out = new ByteArrayOutputStream();
+        var stream = new PrintStream(out, true);
+        var engine = new LoxEngine();
+        var program = engine.newContext(stream, stream).compile("var x = 1; print x;");
+
+        engine.newContext(stream, stream).execute(program);
+        assertThat(out.toString()).isEqualTo("1\n");
+        assertThatThrownBy(() -> new LoxEngine().newContext(stream, stream).execute(program))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Token token(String name) {
+        return new Token(TokenType.IDENTIFIER, name, null, 1);
+    }
+}
@@ -0,0 +1,60 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class InterpreterAllocationTest extends ParserTestBase {
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    @DisplayName("Numeric expressions are evaluated without boxing")
+    void testNumericEvaluationDoesNotAllocate() {
+        var expression = getExpression(resolve("(1 + 2) * -3 / 4 - 0.5;").get(0));
+        var interpreter = new Interpreter();
+
+        var allocated = allocatedBy(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                interpreter.evaluateDouble(expression);
+            }
+        });
+
+        assertThat(interpreter.evaluateDouble(expression)).isEqualTo(-2.75);
+        assertThat(allocated).isLessThan(1024);
+    }
+
+    @Test
+    @DisplayName("Conditions over numbers are evaluated without boxing")
+    void testConditionEvaluationDoesNotAllocate() {
+        var expression = getExpression(resolve("!(1 + 2 > 3 * 4) == !(1 == 2);").get(0));
+        var interpreter = new Interpreter();
+
+        var allocated = allocatedBy(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                interpreter.evaluateBoolean(expression);
+            }
+        });
+
+        assertThat(interpreter.evaluateBoolean(expression)).isTrue();
+        assertThat(allocated).isLessThan(1024);
+    }
+
+    private static long allocatedBy(Runnable action) {
+        var threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        var allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        var thread = Thread.currentThread().getId();
+        // Warm up first, so class loading and the like aren't counted
+        action.run();
+        var before = allocations.getThreadAllocatedBytes(thread);
+        action.run();
+        return allocations.getThreadAllocatedBytes(thread) - before;
+    }
+}
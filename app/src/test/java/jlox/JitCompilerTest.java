@@ -0,0 +1,115 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JitCompilerTest extends ParserTestBase {
+
+    @Test
+    @DisplayName("Loop compiles to a hidden class and picks up where the frame left off")
+    void testLoopCompiles() {
+        var loop = loopIn(resolve("{ var i = 0; var s = \"\"; while (i < 3) { s = s + \"x\"; i = i + 1; } }"));
+        var frame = new Object[] {1.0, "y"};
+
+        var compiled = new JitCompiler().compileLoop(loop, frame);
+
+        assertThat(compiled).isNotNull();
+        assertThat(compiled.run(new Globals(), Output.of(System.out), frame)).isTrue();
+        assertThat(frame).containsExactly(3.0, "yxx");
+    }
+
+    @Test
+    @DisplayName("A loop entered with a local of another type than it was compiled for doesn't run")
+    void testEntryTypesChecked() {
+        var loop = loopIn(resolve("{ var i = 0; while (i < 3) i = i + 1; }"));
+        var compiled = new JitCompiler().compileLoop(loop, new Object[] {0.0});
+
+        var frame = new Object[] {"0"};
+        assertThat(compiled.run(new Globals(), Output.of(System.out), frame)).isFalse();
+        assertThat(frame).containsExactly("0");
+    }
+
+    @Test
+    @DisplayName("Folded literals the parser never makes, -Infinity and NaN, compile too")
+    void testNonFiniteLiteralsCompile() {
+        var program = new Optimizer().optimize(parse("while (going) { print -(1/0); print 0/0; print 1/0; }"));
+        new Resolver(globalSlots).resolve(program);
+        var loop = (Stmt.While) program.get(0);
+
+        assertThat(new JitCompiler().generateSource(loop, new Object[0]))
+                .contains("Double.NEGATIVE_INFINITY").contains("Double.NaN").contains("Double.POSITIVE_INFINITY");
+        assertThat(new JitCompiler().compileLoop(loop, new Object[0])).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Locals only ever holding numbers are primitive doubles")
+    void testNumericLocalsArePrimitive() {
+        var loop = loopIn(resolve("{ var i = 0; while (i < 9) { var j = i; i = j * 2 + 1; } }"));
+        var source = new JitCompiler().generateSource(loop, new Object[] {0.0, null});
+
+        assertThat(source).contains("double l0 = (Double) f[0];").contains("double l1 = 0;").contains("f[0] = l0;");
+    }
+
+    @Test
+    @DisplayName("Locals only ever holding booleans are primitive booleans")
+    void testBooleanLocalsArePrimitive() {
+        var loop = loopIn(resolve("{ var b = 1 < 2; while (b) b = !b; }"));
+        var source = new JitCompiler().generateSource(loop, new Object[] {true});
+
+        assertThat(source).contains("boolean l0 = (Boolean) f[0];");
+    }
+
+    @Test
+    @DisplayName("Locals holding anything else, nil included, stay objects")
+    void testMixedLocalsAreObjects() {
+        var loop = loopIn(resolve("{ var a = 1; var s = \"\"; while (a) { a = \"str\"; var n; n = 2; print s; } }"));
+        var source = new JitCompiler().generateSource(loop, new Object[] {1.0, "", null});
+
+        assertThat(source).contains("Object l0 = f[0];").contains("Object l1 = f[1];").contains("Object l2 = null;")
+                .doesNotContain("f[1] = l1;");
+    }
+
+    @Test
+    @DisplayName("Hot loops run the same compiled, and each is compiled once for every context of an engine")
+    void testCompiledOncePerEngine() {
+        var program = resolve("var n = 0; { var i = 0; while (i < 50) { n = n + i; i = i + 1; } } print n;");
+        var loop = loopIn(program);
+        var compiledLoops = new IdentityHashMap<Stmt.While, JitCompiler.CompiledLoop>();
+
+        assertThat(run(program, compiledLoops)).isEqualTo("1225\n");
+        var compiled = compiledLoops.get(loop);
+        assertThat(compiled).isNotNull();
+        assertThat(run(program, compiledLoops)).isEqualTo("1225\n");
+        assertThat(compiledLoops.get(loop)).isSameAs(compiled);
+    }
+
+    private static String run(List<Stmt> program, Map<Stmt.While, JitCompiler.CompiledLoop> compiledLoops) {
+        var bytes = new ByteArrayOutputStream();
+        var stream = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        var out = Output.of(stream);
+
+        new JitExecutor(out, new Diagnostics(stream, out), compiledLoops, 10).interpret(program);
+        out.flush();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    // The first loop at the top level of the program's blocks
+    private static Stmt.While loopIn(List<Stmt> program) {
+        for (var statement : program) {
+            if (!(statement instanceof Stmt.Block)) continue;
+            for (var inner : ((Stmt.Block) statement).statements) {
+                if (inner instanceof Stmt.While) return (Stmt.While) inner;
+            }
+        }
+        throw new AssertionError("No loop in a block");
+    }
+}
@@ -0,0 +1,149 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoopTest extends ParserTestBase {
+    private static final List<String> programs = List.of(
+            "var i = 0; while (i < 50) { i = i + 1; } print i;",
+            "for (var i = 0; i < 5; i = i + 1) { var twice = i + i; print twice; }",
+            "{ var a = 0; var s = \"\"; for (var i = 0; i < 40; i = i + 1) { var j = 0; while (j < i) j = j + 1; a = a + j; s = s + \"x\"; } print a; print s; }",
+            "var n = 0; while (n < 10) { n = n + 1; if (n == 7) n = \"seven\"; } print \"not reached\";",
+            "{ var x = 1; while (x < 100) x = x * 2; print x; } print x;"
+    );
+
+    @Test
+    @DisplayName("A for loop is parsed into the while loop it stands for")
+    void testForDesugaring() {
+        var block = (Stmt.Block) parseSingleStatement("for (var i = 0; i < 3; i = i + 1) print i;");
+        assertThat(block.statements).hasSize(2);
+        assertStmtType(block.statements.get(0), Stmt.Var.class);
+
+        var loop = (Stmt.While) block.statements.get(1);
+        assertExprType(loop.condition, Expr.Binary.class);
+        var body = (Stmt.Block) loop.body;
+        assertStmtType(body.statements.get(0), Stmt.Print.class);
+        assertExprType(getExpression(body.statements.get(1)), Expr.Assign.class);
+    }
+
+    @Test
+    @DisplayName("Missing for clauses leave nothing to wrap, a missing condition is true")
+    void testEmptyForClauses() {
+        var loop = (Stmt.While) parseSingleStatement("for (;;) print 1;");
+
+        assertThat(getLiteralValue(loop.condition)).isEqualTo(true);
+        assertStmtType(loop.body, Stmt.Print.class);
+    }
+
+    @Test
+    @DisplayName("Malformed loops are reported")
+    void testMalformedLoops() {
+        var err = setNewErr();
+        parse("while 1) print 1;\nfor (var i = 0; i < 1) print i;");
+
+        assertThat(err.toString()).isEqualTo(
+                "[line 1] Error at '1': Expected ( after while\n" +
+                "[line 2] Error at ')': Expected ; after loop condition\n");
+    }
+
+    @Test
+    @DisplayName("A loop tiers up once it looped back often enough, counting every run of it by the same interpreter")
+    void testBackEdgesCounted() {
+        var program = resolve("var i = 0; while (i < 100) i = i + 1; i = 0; while (i < 3) i = i + 1;");
+        var first = (Stmt.While) program.get(1);
+        var second = (Stmt.While) program.get(3);
+
+        var plain = interpreter(Interpreter.NEVER);
+        plain.interpret(program);
+        assertThat(plain.backEdges(first)).isZero();
+        assertThat(plain.isHot(first)).isFalse();
+
+        var tiered = interpreter(10);
+        tiered.interpret(program);
+        assertThat(tiered.backEdges(first)).isEqualTo(10);
+        assertThat(tiered.isHot(first)).isTrue();
+        assertThat(tiered.backEdges(second)).isEqualTo(3);
+        tiered.interpret(program);
+        tiered.interpret(program);
+        assertThat(tiered.backEdges(second)).isEqualTo(9);
+        assertThat(tiered.isHot(second)).isFalse();
+        tiered.interpret(program);
+        assertThat(tiered.isHot(second)).isTrue();
+
+        // Another interpreter running the same program starts counting from scratch
+        var fresh = interpreter(10);
+        fresh.interpret(program);
+        assertThat(fresh.backEdges(second)).isEqualTo(3);
+        assertThat(fresh.isHot(second)).isFalse();
+    }
+
+    @Test
+    @DisplayName("An interpreter doesn't keep the loops of programs that are gone")
+    void testProfilesDroppedWithProgram() throws InterruptedException {
+        var interpreter = interpreter(10);
+        var program = resolve("var i = 0; while (i < 100) i = i + 1;");
+        interpreter.interpret(program);
+        assertThat(interpreter.isHot((Stmt.While) program.get(1))).isTrue();
+
+        var loop = new WeakReference<>(program.get(1));
+        program = null;
+        for (int i = 0; i < 50 && loop.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(loop.get()).isNull();
+    }
+
+    @Test
+    @DisplayName("Loops print the same whether they tier up or not")
+    void testTieredLoopsRunTheSame() {
+        for (var source : programs) {
+            var expected = run(resolve(source), Interpreter.NEVER);
+            assertThat(run(resolve(source), 1)).as(source).isEqualTo(expected);
+            assertThat(run(resolve(source), 20)).as(source).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Loops print the same compiled by the JIT")
+    void testJitCompiledLoopsRunTheSame() {
+        for (var source : programs) {
+            var expected = run(resolve(source), Interpreter.NEVER);
+            var program = resolve(source);
+
+            var bytes = new ByteArrayOutputStream();
+            var stream = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+            var out = Output.of(stream);
+            new JitExecutor(out, new Diagnostics(stream, out), new IdentityHashMap<>(), 5).interpret(program);
+            out.flush();
+
+            assertThat(bytes.toString(StandardCharsets.UTF_8)).as(source).isEqualTo(expected);
+        }
+    }
+
+    // Output and errors both go to the same stream, so their relative order is checked too
+    private static String run(List<Stmt> program, int hotLoopThreshold) {
+        var bytes = new ByteArrayOutputStream();
+        var stream = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        var out = Output.of(stream);
+
+        new Interpreter(new Globals(), out, new Diagnostics(stream, out), false, hotLoopThreshold).interpret(program);
+        out.flush();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Interpreter interpreter(int hotLoopThreshold) {
+        var out = Output.of(new PrintStream(OutputStream.nullOutputStream()));
+        return new Interpreter(new Globals(), out, new Diagnostics(System.err, out), false, hotLoopThreshold);
+    }
+}
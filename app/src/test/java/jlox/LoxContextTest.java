@@ -0,0 +1,96 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoxContextTest {
+    private final LoxEngine engine = new LoxEngine();
+
+    @Test
+    @DisplayName("A context keeps its globals between runs, other contexts don't see them")
+    void testGlobalsAreIsolated() {
+        var first = new ByteArrayOutputStream();
+        var second = new ByteArrayOutputStream();
+        var firstContext = engine.newContext(new PrintStream(first, true), new PrintStream(first, true));
+        var secondContext = engine.newContext(new PrintStream(second, true), new PrintStream(second, true));
+
+        firstContext.run("var a = 1;");
+        firstContext.run("print a;");
+        secondContext.run("print a;");
+
+        assertThat(first.toString()).isEqualTo("1\n");
+        assertThat(second.toString()).isEqualTo("Variable a is undefined\n[line 1]\n");
+        assertThat(firstContext.hadRuntimeError()).isFalse();
+        assertThat(secondContext.hadRuntimeError()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Script files run from their bytes like their text would")
+    void testRunFile(@TempDir Path directory) throws Exception {
+        var script = directory.resolve("script.lox");
+        Files.writeString(script, "var s = \"zażółć\";\nprint s + \"!\";\nprint 1.25 * 4;\n", StandardCharsets.UTF_8);
+        var out = new ByteArrayOutputStream();
+        var context = engine.newContext(new PrintStream(out, true, StandardCharsets.UTF_8), System.err);
+
+        context.runFile(script);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("zażółć!\n5\n");
+        assertThat(context.hadError()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Errors are reported per run")
+    void testErrorsAreReset() {
+        var context = engine.newContext(new PrintStream(new ByteArrayOutputStream()), new PrintStream(new ByteArrayOutputStream()));
+
+        context.run("print ;");
+        assertThat(context.hadError()).isTrue();
+
+        context.run("print 1;");
+        assertThat(context.hadError()).isFalse();
+    }
+
+    @Test
+    @DisplayName("One compiled program runs concurrently in many contexts")
+    void testConcurrentContexts() throws Exception {
+        var program = engine.newContext(System.out, System.err)
+                .compile("var n = 0; { var i = n + 1; n = i * 2; } print n; print m;");
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 64; i++) {
+                var m = i;
+                Callable<String> task = () -> {
+                    var out = new ByteArrayOutputStream();
+                    var stream = new PrintStream(out, true);
+                    var context = engine.newContext(stream, stream);
+                    context.run("var m = " + m + ";");
+                    for (int run = 0; run < 100; run++) {
+                        context.execute(program);
+                    }
+                    return out.toString();
+                };
+                results.add(pool.submit(task));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get()).isEqualTo(("2\n" + i + "\n").repeat(100));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
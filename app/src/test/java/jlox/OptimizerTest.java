@@ -0,0 +1,89 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OptimizerTest extends ParserTestBase {
+
+    @Test
+    @DisplayName("Constant expressions fold into a literal")
+    void testFolding() {
+        assertThat(optimizedValue("(2 * 3) + 4;")).isEqualTo(10.0);
+        assertThat(optimizedValue("!true;")).isEqualTo(false);
+        assertThat(optimizedValue("\"a\" + \"b\";")).isEqualTo("ab");
+        assertThat(optimizedValue("1 < 2 == true;")).isEqualTo(true);
+    }
+
+    @Test
+    @DisplayName("Expressions that fail at run time are left to fail")
+    void testFailingExpressionsStay() {
+        var program = optimize("-\"str\"; 1 + \"a\";");
+
+        assertExprType(getExpression(program.get(0)), Expr.Unary.class);
+        assertExprType(getExpression(program.get(1)), Expr.Binary.class);
+    }
+
+    @Test
+    @DisplayName("Groupings around non-constant expressions are stripped")
+    void testGroupingsStripped() {
+        var expr = getExpression(optimize("(a) + (b);").get(0));
+
+        var binary = (Expr.Binary) expr;
+        assertExprType(binary.left, Expr.Variable.class);
+        assertExprType(binary.right, Expr.Variable.class);
+    }
+
+    @Test
+    @DisplayName("Literal initializers of never assigned variables are propagated")
+    void testPropagation() {
+        var block = (Stmt.Block) optimize("{ var a = 2; print a * 3; }").get(0);
+
+        var print = (Stmt.Print) block.statements.get(1);
+        assertThat(((Expr.Literal) print.expression).value).isEqualTo(6.0);
+    }
+
+    @Test
+    @DisplayName("Assigned variables and reads before the declaration are not propagated")
+    void testNoPropagation() {
+        var program = optimize("print a; var a = 1; { var b = 2; print b; b = 3; }");
+        var block = (Stmt.Block) program.get(2);
+
+        assertExprType(((Stmt.Print) program.get(0)).expression, Expr.Variable.class);
+        assertExprType(((Stmt.Print) block.statements.get(1)).expression, Expr.Variable.class);
+    }
+
+    @Test
+    @DisplayName("If statements with a constant condition are replaced by the branch that runs")
+    void testBranchPruning() {
+        var program = optimize("if (1 < 2) print 1; else print 2; if (false) print 3; print 4;");
+
+        assertThat(program).hasSize(2);
+        assertThat(((Expr.Literal) ((Stmt.Print) program.get(0)).expression).value).isEqualTo(1.0);
+        assertThat(((Expr.Literal) ((Stmt.Print) program.get(1)).expression).value).isEqualTo(4.0);
+    }
+
+    @Test
+    @DisplayName("Loops that never run are dropped, assignments in loops stop propagation")
+    void testLoops() {
+        var program = optimize("while (nil) print 1; var a = 1; while (a < 3) a = a + 1; print a;");
+
+        assertThat(program).hasSize(3);
+        var loop = (Stmt.While) program.get(1);
+        assertExprType(((Expr.Binary) loop.condition).left, Expr.Variable.class);
+        assertExprType(((Stmt.Print) program.get(2)).expression, Expr.Variable.class);
+    }
+
+    private List<Stmt> optimize(String source) {
+        return new Optimizer().optimize(parse(source));
+    }
+
+    private Object optimizedValue(String source) {
+        var expr = getExpression(optimize(source).get(0));
+        assertExprType(expr, Expr.Literal.class);
+        return ((Expr.Literal) expr).value;
+    }
+}
@@ -0,0 +1,109 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OutputTest {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final PrintStream stream = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+
+    @Test
+    @DisplayName("Lines are held back until the buffer fills up or is flushed")
+    void testBuffersUntilFull() {
+        var output = Output.of(stream, 10, null);
+
+        output.print("abc");
+        output.print(nil());
+        assertThat(written()).isEmpty();
+
+        output.print(1.5);
+        assertThat(written()).isEqualTo("abc\nnil\n1.5\n");
+
+        output.print(true);
+        output.flush();
+        output.flush();
+        assertThat(written()).isEqualTo("abc\nnil\n1.5\ntrue\n");
+    }
+
+    @Test
+    @DisplayName("A capacity of 0 writes every line")
+    void testWritesEveryLine() {
+        var everyLine = Output.of(stream, 0, null);
+        everyLine.print(1.0);
+        assertThat(written()).isEqualTo("1\n");
+    }
+
+    @Test
+    @DisplayName("Lines are written once they waited the delay out, even if nothing is printed after them")
+    void testWritesLateLines() throws InterruptedException {
+        var delayed = Output.of(stream, Output.DEFAULT_CAPACITY, Duration.ofMillis(20));
+        delayed.print(2.0);
+        delayed.print(3.0);
+        awaitWritten("2\n3\n");
+
+        // Nor does a flush in between keep later lines waiting
+        delayed.print(4.0);
+        delayed.flush();
+        delayed.print(5.0);
+        awaitWritten("2\n3\n4\n5\n");
+    }
+
+    @Test
+    @DisplayName("Written straight to a file channel, lines longer than the buffer included")
+    void testChannel(@TempDir Path directory) throws Exception {
+        var file = directory.resolve("out.txt");
+        var longLine = "zażółć gęślą jaźń ".repeat(200);
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            var output = Output.of(channel, StandardCharsets.UTF_8, 16, null);
+            output.print(longLine);
+            output.print(0.1);
+            output.print("ąę");
+            output.flush();
+        }
+        assertThat(Files.readString(file, StandardCharsets.UTF_8)).isEqualTo(longLine + "\n0.1\nąę\n");
+    }
+
+    @Test
+    @DisplayName("A context writes out everything printed before an error, before the error")
+    void testFlushedBeforeErrors() {
+        for (var kind : LoxEngine.Kind.values()) {
+            bytes.reset();
+            var context = new LoxEngine(kind, false).newContext(Output.of(stream), stream);
+
+            context.run("print 1; print \"two\";\nprint -nil;");
+            context.run("print 3;");
+            context.run("print 4; print ;");
+
+            assertThat(written()).as(kind.name()).isEqualTo("1\ntwo\nOperand must be a number\n[line 2]\n3\n"
+                    + "[line 1] Error at ';': Expected an expression\n");
+        }
+    }
+
+    private String written() {
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    // The timer writes from a thread of its own
+    private void awaitWritten(String expected) throws InterruptedException {
+        for (int i = 0; i < 500 && !written().equals(expected); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(written()).isEqualTo(expected);
+    }
+
+    private static Object nil() {
+        return null;
+    }
+}
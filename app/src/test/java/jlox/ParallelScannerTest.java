@@ -0,0 +1,61 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelScannerTest {
+    private static final String[] sources = {
+            "var a = 1;\nprint a;\n",
+            "print \"one\nline\ntwo\";\nprint 1;\n",
+            "// a comment with a \" quote\nprint \"str\";\n// and \"another\"\n",
+            "var s = \"starts here\n\n\nand ends here\"; var t = \"x\";\nprint s + t;",
+            "print \"never\nends\n\nat all",
+            "print \"never ends\n",
+            "a @ b\n# c\n\"d\ne\" $\n",
+            "\n\n\n",
+            "",
+            "print 1.5;\nprint 2.;\n3.25\n\"\"\n\"\n\"\n"
+    };
+
+    @ParameterizedTest(name = "chunks of {0} characters")
+    @ValueSource(ints = {1, 2, 3, 5, 8, 13, 1 << 16})
+    @DisplayName("Same tokens and errors as the sequential scanner")
+    void testSameAsSequential(int chunkSize) {
+        for (var source : sources) {
+            assertSameAsSequential(source, chunkSize);
+        }
+    }
+
+    @ParameterizedTest(name = "chunks of {0} characters")
+    @ValueSource(ints = {64, 1000, 4096})
+    @DisplayName("Same tokens and errors for a large source")
+    void testLargeSource(int chunkSize) {
+        var source = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            source.append("var v").append(i).append(" = ").append(i).append(".5 * 2;\n")
+                  .append("// \"comment ").append(i).append('\n')
+                  .append("print \"multi\nline ").append(i).append("\" + \"\";\n");
+            if (i % 97 == 0) source.append("@\n");
+        }
+
+        assertSameAsSequential(source.toString(), chunkSize);
+    }
+
+    private static void assertSameAsSequential(String source, int chunkSize) {
+        var sequentialErr = new ByteArrayOutputStream();
+        var expected = new Scanner(source, new Diagnostics(new PrintStream(sequentialErr, true))).scan().toList();
+
+        var parallelErr = new ByteArrayOutputStream();
+        var actual = new ParallelScanner(source, new Diagnostics(new PrintStream(parallelErr, true)), chunkSize)
+                .scan().toList();
+
+        assertThat(actual).as(source).isEqualTo(expected);
+        assertThat(parallelErr.toString()).as(source).isEqualTo(sequentialErr.toString());
+    }
+}
@@ -0,0 +1,108 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParseCacheTest extends ParserTestBase {
+    private static final String SCRIPT = "var s = \"zażółć\";\n{\n  var n = -1.5 * (2 + 3);\n  if (!(n >= 0) == true) print s; else s = nil;\n}\nprint n;\n";
+
+    @Test
+    @DisplayName("A decoded program is the program that was encoded")
+    void testRoundTrip() {
+        var program = parse(SCRIPT + "var u; if (u) print 1;\nprint 1 != 2 < 3;\nwhile (u) for (var i = 0; i < 2;) u = nil;\n");
+        var encoded = AstCodec.encode(program);
+        var decoded = AstCodec.decode(ByteBuffer.wrap(encoded));
+
+        assertThat(AstCodec.encode(decoded)).isEqualTo(encoded);
+        var names = decoded.stream()
+                .filter(Stmt.Var.class::isInstance)
+                .map(stmt -> ((Stmt.Var) stmt).name)
+                .toList();
+        assertThat(names).extracting(token -> token.lexeme).containsExactly("s", "u");
+        assertThat(names).extracting(token -> token.line).containsExactly(1, 7);
+    }
+
+    @Test
+    @DisplayName("Damaged, truncated or outdated data is rejected")
+    void testRejectsBadData() {
+        var encoded = AstCodec.encode(parse(SCRIPT));
+
+        var damaged = encoded.clone();
+        damaged[damaged.length - 3] ^= 0x10;
+        assertThatThrownBy(() -> AstCodec.decode(ByteBuffer.wrap(damaged))).isInstanceOf(IllegalArgumentException.class);
+
+        var truncated = ByteBuffer.wrap(encoded, 0, encoded.length - 1).slice();
+        assertThatThrownBy(() -> AstCodec.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+
+        var outdated = ByteBuffer.wrap(encoded.clone()).putInt(4, AstCodec.FORMAT_VERSION + 1).rewind();
+        assertThatThrownBy(() -> AstCodec.decode(outdated)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> AstCodec.decode(ByteBuffer.wrap(new byte[3]))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("A script run again comes from the cache, and runs the same")
+    void testCacheHit(@TempDir Path directory) throws Exception {
+        var script = writeScript(directory, SCRIPT);
+        var cache = directory.resolve("cache");
+        var entry = new ParseCache(cache).entry(ByteBuffer.wrap(Files.readAllBytes(script)));
+
+        assertThat(runFile(script, cache)).isEqualTo("zażółć\nVariable n is undefined\n[line 6]\n");
+        assertThat(entry).isRegularFile();
+
+        // Proves the next run never parses the script: the entry says something else
+        Files.write(entry, AstCodec.encode(parse("print \"cached\";")));
+        assertThat(runFile(script, cache)).isEqualTo("cached\n");
+    }
+
+    @Test
+    @DisplayName("A changed script misses, a corrupt entry is rebuilt")
+    void testStaleAndCorruptEntries(@TempDir Path directory) throws Exception {
+        var cache = directory.resolve("cache");
+        var script = writeScript(directory, "print 1;");
+        assertThat(runFile(script, cache)).isEqualTo("1\n");
+
+        Files.writeString(script, "print 2;");
+        assertThat(runFile(script, cache)).isEqualTo("2\n");
+
+        var entry = new ParseCache(cache).entry(ByteBuffer.wrap(Files.readAllBytes(script)));
+        Files.write(entry, new byte[] {'L', 'O', 'X', 'C', 0, 0});
+        assertThat(runFile(script, cache)).isEqualTo("2\n");
+        assertThat(AstCodec.decode(ByteBuffer.wrap(Files.readAllBytes(entry)))).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Scripts with errors aren't cached")
+    void testErrorsNotCached(@TempDir Path directory) throws Exception {
+        var cache = directory.resolve("cache");
+        var script = writeScript(directory, "print ;");
+
+        assertThat(runFile(script, cache)).isEqualTo("[line 1] Error at ';': Expected an expression\n");
+        assertThat(runFile(script, cache)).isEqualTo("[line 1] Error at ';': Expected an expression\n");
+        assertThat(new ParseCache(cache).entry(ByteBuffer.wrap(Files.readAllBytes(script)))).doesNotExist();
+    }
+
+    private static Path writeScript(Path directory, String source) throws Exception {
+        var script = directory.resolve("script.lox");
+        Files.writeString(script, source, StandardCharsets.UTF_8);
+        return script;
+    }
+
+    private static String runFile(Path script, Path cache) throws Exception {
+        var out = new ByteArrayOutputStream();
+        var stream = new PrintStream(out, true, StandardCharsets.UTF_8);
+        new LoxEngine(LoxEngine.Kind.TREE, false, cache).newContext(stream, stream).runFile(script);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
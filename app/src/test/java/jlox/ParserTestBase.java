@@ -7,6 +7,9 @@ import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class ParserTestBase {
+    protected Diagnostics diagnostics = new Diagnostics(System.err);
+    // Shared by everything a test resolves, like an engine's
+    protected final GlobalSlots globalSlots = new GlobalSlots();
 
     protected Stmt parseSingleStatement(String source) {
         var result = parse(source);
@@ -15,17 +18,23 @@ public class ParserTestBase {
     }
 
     protected List<Stmt> parse(String source) {
-        var scanner = new Scanner(source);
-        var tokens = scanner.scanTokens();
-        var parser = new Parser(tokens);
+        var scanner = new Scanner(source, diagnostics);
+        var tokens = scanner.scan();
+        var parser = new Parser(tokens, diagnostics);
 
         return parser.parse();
     }
 
+    protected List<Stmt> resolve(String source) {
+        var program = parse(source);
+        new Resolver(globalSlots).resolve(program);
+        return program;
+    }
+
     protected ByteArrayOutputStream setNewErr() {
         var err = new ByteArrayOutputStream();
         var errPrintStream = new PrintStream(err);
-        Lox.setErr(errPrintStream);
+        diagnostics = new Diagnostics(errPrintStream);
         return err;
     }
 
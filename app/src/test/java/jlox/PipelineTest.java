@@ -0,0 +1,87 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PipelineTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private LoxContext context(LoxEngine.Kind kind) {
+        return new LoxEngine(kind, false).newContext(new PrintStream(out, true), new PrintStream(err, true));
+    }
+
+    @Test
+    @DisplayName("Streaming prints the same as running the whole program at once")
+    void testSameOutputAsRun() {
+        var source = new StringBuilder("var total = 0;\n");
+        for (int i = 0; i < 2_000; i++) {
+            source.append("{ var x = ").append(i).append("; total = total + x; }\n")
+                  .append("if (total > 1000000) print total;\n");
+        }
+        source.append("print total;\n");
+
+        for (var kind : new LoxEngine.Kind[] {LoxEngine.Kind.TREE, LoxEngine.Kind.VM, LoxEngine.Kind.CLOSURE}) {
+            out.reset();
+            context(kind).run(source.toString());
+            var expected = out.toString();
+
+            out.reset();
+            context(kind).runStreaming(source.toString());
+            assertThat(out.toString()).as(kind.name()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Declarations before the first parse error run, none after it")
+    void testStopsAtFirstParseError() {
+        var context = context(LoxEngine.Kind.TREE);
+
+        context.runStreaming("print 1;\nprint 2;\nprint ;\nprint 3;\nprint );\n");
+
+        assertThat(out.toString()).isEqualTo("1\n2\n");
+        assertThat(err.toString())
+                .contains("[line 3] Error at ';': Expected an expression")
+                .contains("[line 5] Error at ')': Expected an expression");
+        assertThat(context.hadError()).isTrue();
+    }
+
+    @Test
+    @DisplayName("A parse error is reported after the output of everything before it, printed once")
+    void testParseErrorAfterLongOutput() {
+        var source = "for (var i = 0; i < 100000; i = i + 1) print i;\n" + "var x = 1;\n".repeat(10) + "print ;\n";
+        var expected = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            expected.append(i).append('\n');
+        }
+
+        for (var kind : new LoxEngine.Kind[] {LoxEngine.Kind.TREE, LoxEngine.Kind.VM}) {
+            for (int run = 0; run < 10; run++) {
+                out.reset();
+                err.reset();
+                context(kind).runStreaming(source);
+
+                assertThat(out.toString()).as(kind.name()).isEqualTo(expected.toString());
+                assertThat(err.toString()).isEqualTo("[line 12] Error at ';': Expected an expression\n");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A runtime error stops execution and parsing")
+    void testStopsAtRuntimeError() {
+        var context = context(LoxEngine.Kind.TREE);
+        var source = "print 1;\nprint -\"a\";\n" + "print 2;\n".repeat(10_000);
+
+        context.runStreaming(source);
+
+        assertThat(out.toString()).isEqualTo("1\n");
+        assertThat(err.toString()).isEqualTo("Operand must be a number\n[line 2]\n");
+        assertThat(context.hadRuntimeError()).isTrue();
+    }
+}
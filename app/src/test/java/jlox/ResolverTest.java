@@ -0,0 +1,112 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResolverTest extends ParserTestBase {
+
+    @Test
+    @DisplayName("Top level variables are globals, with one slot per name in every program")
+    void testGlobalSlots() {
+        var program = resolve("var a = 1; var b; a = a; { b = a; }");
+
+        var declaration = (Stmt.Var) program.get(0);
+        var assignment = (Expr.Assign) getExpression(program.get(2));
+        var variable = (Expr.Variable) assignment.value;
+        var a = globalSlots.slot("a");
+
+        assertThat(declaration.depth).isEqualTo(-1);
+        assertThat(declaration.slot).isEqualTo(a);
+        assertThat(((Stmt.Var) program.get(1)).slot).isEqualTo(globalSlots.slot("b")).isNotEqualTo(a);
+        assertThat(assignment.depth).isEqualTo(-1);
+        assertThat(assignment.slot).isEqualTo(a);
+        assertThat(variable.depth).isEqualTo(-1);
+        assertThat(variable.slot).isEqualTo(a);
+
+        var later = (Expr.Variable) getExpression(resolve("c; a;").get(1));
+        assertThat(later.slot).isEqualTo(a);
+        assertThat(globalSlots.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Block variables get consecutive slots in the block's frame")
+    void testBlockVariablesGetSlots() {
+        var block = (Stmt.Block) resolve("{ var a = 1; var b = 2; b; }").get(0);
+
+        var variable = (Expr.Variable) getExpression(block.statements.get(2));
+
+        assertThat(block.slots).isEqualTo(2);
+        assertThat(((Stmt.Var) block.statements.get(0)).slot).isEqualTo(0);
+        assertThat(((Stmt.Var) block.statements.get(1)).slot).isEqualTo(1);
+        assertThat(variable.depth).isEqualTo(0);
+        assertThat(variable.slot).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Nested blocks live in their outermost block's frame, after the blocks around them")
+    void testNestedBlocksShareFrame() {
+        var outer = (Stmt.Block) resolve("{ var a = 1; { var b = 2; a = b; } }").get(0);
+        var inner = (Stmt.Block) outer.statements.get(1);
+
+        var assignment = (Expr.Assign) getExpression(inner.statements.get(1));
+        var variable = (Expr.Variable) assignment.value;
+
+        assertThat(outer.slots).isEqualTo(2);
+        assertThat(inner.slots).isEqualTo(0);
+        assertThat(assignment.depth).isEqualTo(0);
+        assertThat(assignment.slot).isEqualTo(0);
+        assertThat(variable.depth).isEqualTo(0);
+        assertThat(variable.slot).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Sibling blocks reuse slots, blocks without declarations get no frame")
+    void testFrameSizing() {
+        var program = resolve("{ var a; { var b; var c; } { var d; { var e; } } print a; }\n{ { print 1; } }");
+        var outer = (Stmt.Block) program.get(0);
+        var second = (Stmt.Block) outer.statements.get(2);
+        var innermost = (Stmt.Block) second.statements.get(1);
+
+        assertThat(outer.slots).isEqualTo(3);
+        assertThat(((Stmt.Var) second.statements.get(0)).slot).isEqualTo(1);
+        assertThat(((Stmt.Var) innermost.statements.get(0)).slot).isEqualTo(2);
+        assertThat(((Stmt.Block) program.get(1)).slots).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Initializer refers to the shadowed variable, not the one being declared")
+    void testInitializerSeesShadowedVariable() {
+        var outer = (Stmt.Block) resolve("{ var a = 1; { var a = a; } }").get(0);
+        var inner = (Stmt.Block) outer.statements.get(1);
+
+        var declaration = (Stmt.Var) inner.statements.get(0);
+        var variable = (Expr.Variable) declaration.initializer;
+
+        assertThat(variable.depth).isEqualTo(0);
+        assertThat(variable.slot).isEqualTo(0);
+        assertThat(declaration.slot).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Redeclaring a variable in the same block reuses its slot")
+    void testRedeclarationReusesSlot() {
+        var block = (Stmt.Block) resolve("{ var a = 1; var a = 2; }").get(0);
+
+        assertThat(block.slots).isEqualTo(1);
+        assertThat(((Stmt.Var) block.statements.get(1)).slot).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Arithmetic is marked numeric, + only when both operands are known numbers")
+    void testNumericMarking() {
+        var program = resolve("1 + 2 * 3; 1 + a; a - b; a < 1; -a + 1;");
+
+        assertThat(((Expr.Binary) getExpression(program.get(0))).numeric).isTrue();
+        assertThat(((Expr.Binary) getExpression(program.get(1))).numeric).isFalse();
+        assertThat(((Expr.Binary) getExpression(program.get(2))).numeric).isTrue();
+        assertThat(((Expr.Binary) getExpression(program.get(3))).numeric).isFalse();
+        assertThat(((Expr.Binary) getExpression(program.get(4))).numeric).isTrue();
+    }
+}
@@ -0,0 +1,76 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RopeTest {
+    private static final String LONG = "x".repeat(Rope.MIN_LENGTH);
+
+    @Test
+    @DisplayName("Short concatenations stay Strings, long ones become ropes")
+    void testShortResultsAreStrings() {
+        assertThat(Rope.concat("ab", "cd")).isInstanceOf(String.class).hasToString("abcd");
+        assertThat(Rope.concat(LONG, "")).isInstanceOf(Rope.class).hasToString(LONG);
+    }
+
+    @Test
+    @DisplayName("Every rope keeps its own contents when others append to the same builder")
+    void testVersionsAreIndependent() {
+        var base = Rope.concat(LONG, "a");
+        var first = Rope.concat(base, "b");
+        var second = Rope.concat(base, "c");
+        var longer = Rope.concat(first, "d");
+        var prepended = Rope.concat("<", first);
+        var doubled = Rope.concat(longer, longer);
+
+        assertThat(base).hasToString(LONG + "a");
+        assertThat(first).hasToString(LONG + "ab");
+        assertThat(second).hasToString(LONG + "ac");
+        assertThat(longer).hasToString(LONG + "abd");
+        assertThat(prepended).hasToString("<" + LONG + "ab");
+        assertThat(doubled).hasToString(LONG + "abd" + LONG + "abd");
+        assertThat(first.length()).isEqualTo(LONG.length() + 2);
+        assertThat(first.charAt(LONG.length() + 1)).isEqualTo('b');
+    }
+
+    @Test
+    @DisplayName("Ropes are equal to strings and ropes with the same contents, and hash like them")
+    void testEquality() {
+        var rope = Rope.concat(LONG, "a");
+        var other = Rope.concat(Rope.concat(LONG.substring(1), "x"), "a");
+
+        assertThat(Values.isEqual(rope, LONG + "a")).isTrue();
+        assertThat(Values.isEqual(LONG + "a", rope)).isTrue();
+        assertThat(Values.isEqual(rope, other)).isTrue();
+        assertThat(Values.isEqual(rope, LONG)).isFalse();
+        assertThat(Values.isEqual(rope, null)).isFalse();
+        assertThat(Values.isEqual(rope, 1.0)).isFalse();
+        assertThat(rope).isEqualTo(other).hasSameHashCodeAs(LONG + "a");
+    }
+
+    @Test
+    @DisplayName("A string built up one statement at a time takes linear time")
+    void testRepeatedAppends() {
+        var statements = 20_000;
+        var source = new StringBuilder("var s = \"\";\n");
+        for (int i = 0; i < statements; i++) {
+            source.append("s = s + \"line of a report\";\n");
+        }
+        source.append("print s == s + \"\"; print s;");
+
+        for (var kind : LoxEngine.Kind.values()) {
+            var out = new ByteArrayOutputStream();
+            var stream = new PrintStream(out, true, StandardCharsets.UTF_8);
+            new LoxEngine(kind, false).newContext(stream, stream).run(source.toString());
+
+            assertThat(out.toString(StandardCharsets.UTF_8)).as(kind.name())
+                    .isEqualTo("true\n" + "line of a report".repeat(statements) + "\n");
+        }
+    }
+}
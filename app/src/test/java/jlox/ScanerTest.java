@@ -4,6 +4,7 @@ import org.assertj.core.api.SoftAssertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
 
@@ -492,19 +493,19 @@ class ScanerTest {
         }
 
         public FirstTokenAndEofAsserter producesFirstTokenOfType(TokenType tokenType) {
-            return new FirstTokenAndEofAsserter(new Scanner(scannerSource), tokenType);
+            return new FirstTokenAndEofAsserter(scannerSource, tokenType);
         }
     }
 
     static class FirstTokenAndEofAsserter {
-        private final Scanner primedScanner;
+        private final String scannerSource;
         private final TokenType tokenType;
         private String lexeme;
         private Object literal;
         private Integer tokenLine;
 
-        public FirstTokenAndEofAsserter(Scanner primedScanner, TokenType tokenType) {
-            this.primedScanner = primedScanner;
+        public FirstTokenAndEofAsserter(String scannerSource, TokenType tokenType) {
+            this.scannerSource = scannerSource;
             this.tokenType = tokenType;
         }
 
@@ -537,10 +538,18 @@ class ScanerTest {
             var expectedToken = new Token(tokenType, lexeme, literal, tokenLine);
             var expectedEof = new Token(TokenType.EOF, "", null, eofLine);
 
-            var tokens = primedScanner.scanTokens();
+            var tokens = new Scanner(scannerSource).scanTokens();
             var tokenIter = tokens.iterator();
             var softly = new SoftAssertions();
 
+            // Smallest chunks possible, so every line of the source is a chunk of its own
+            var parallelTokens = new ParallelScanner(scannerSource, new Diagnostics(System.err), 1).scan().toList();
+            softly.assertThat(parallelTokens).as("Parallel scanner tokens").isEqualTo(tokens);
+
+            var bytes = scannerSource.getBytes(StandardCharsets.UTF_8);
+            var byteTokens = new ByteScanner(bytes, new Diagnostics(System.err)).scan().toList();
+            softly.assertThat(byteTokens).as("Byte scanner tokens").isEqualTo(tokens);
+
             var produced = tokenIter.next();
             softly.assertThat(produced).isEqualTo(expectedToken);
 
@@ -0,0 +1,84 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static jlox.SpecializingNodes.State.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SpecializingNodesTest {
+    private static final Token plus = new Token(TokenType.PLUS, "+", null, 1);
+
+    private Object value;
+    private final Evaluator operand = frame -> value;
+    private final Object[] frame = new Object[0];
+
+    @Test
+    @DisplayName("Add specializes to doubles on first execution")
+    void testAddSpecializesToDoubles() {
+        var add = new SpecializingNodes.Add(plus, operand, operand);
+        assertThat(add.state()).isEqualTo(UNINITIALIZED);
+
+        value = 2.0;
+        assertThat(add.evaluate(frame)).isEqualTo(4.0);
+        assertThat(add.state()).isEqualTo(DOUBLES);
+
+        value = 3.0;
+        assertThat(add.evaluate(frame)).isEqualTo(6.0);
+        assertThat(add.state()).isEqualTo(DOUBLES);
+    }
+
+    @Test
+    @DisplayName("Add specializes to strings on first execution")
+    void testAddSpecializesToStrings() {
+        var add = new SpecializingNodes.Add(plus, operand, operand);
+
+        value = "ab";
+        assertThat(add.evaluate(frame)).isEqualTo("abab");
+        assertThat(add.state()).isEqualTo(STRINGS);
+    }
+
+    @Test
+    @DisplayName("Add goes generic when it sees a new operand type, and stays correct")
+    void testAddFallsBackToGeneric() {
+        var add = new SpecializingNodes.Add(plus, operand, operand);
+
+        value = 1.0;
+        add.evaluate(frame);
+        value = "x";
+        assertThat(add.evaluate(frame)).isEqualTo("xx");
+        assertThat(add.state()).isEqualTo(GENERIC);
+
+        value = 1.5;
+        assertThat(add.evaluate(frame)).isEqualTo(3.0);
+        assertThat(add.state()).isEqualTo(GENERIC);
+    }
+
+    @Test
+    @DisplayName("Specialized Add still reports bad operands")
+    void testSpecializedAddReportsErrors() {
+        var add = new SpecializingNodes.Add(plus, operand, operand);
+
+        value = 1.0;
+        add.evaluate(frame);
+        value = true;
+        assertThatThrownBy(() -> add.evaluate(frame))
+                .isInstanceOf(RuntimeError.class)
+                .hasMessage("Operand must be a number or a string");
+    }
+
+    @Test
+    @DisplayName("Equal keeps Double.equals semantics when specialized to doubles")
+    void testEqualSpecializesToDoubles() {
+        var equal = new SpecializingNodes.Equal(false, operand, operand);
+
+        value = Double.NaN;
+        assertThat(equal.evaluate(frame)).isEqualTo(true);
+        assertThat(equal.state()).isEqualTo(DOUBLES);
+
+        value = null;
+        assertThat(equal.evaluate(frame)).isEqualTo(true);
+        assertThat(equal.state()).isEqualTo(GENERIC);
+    }
+}
@@ -0,0 +1,92 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static jlox.TokenType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SymbolsTest {
+    private static final String SOURCE = "var count = 1;\n{ var count = count + 1; print count; }\ncount = counter;";
+
+    @Test
+    @DisplayName("Interning a name from any source gives back the first String seen for it")
+    void testIntern() {
+        var symbols = new Symbols();
+        var first = symbols.intern("var name;", 4, 4);
+
+        assertThat(first).isEqualTo("name");
+        assertThat(symbols.intern("name = 1", 0, 4)).isSameAs(first);
+        assertThat(symbols.intern(ByteBuffer.wrap("print name".getBytes(StandardCharsets.US_ASCII)), 6, 4)).isSameAs(first);
+        assertThat(symbols.intern(new String("name"))).isSameAs(first);
+        assertThat(symbols.intern("names", 0, 5)).isNotSameAs(first).isEqualTo("names");
+        assertThat(symbols.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Names stay interned while the table grows")
+    void testGrowth() {
+        var symbols = new Symbols();
+        var interned = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            var name = "v" + i;
+            interned.add(symbols.intern(name, 0, name.length()));
+        }
+
+        assertThat(symbols.size()).isEqualTo(1000);
+        for (int i = 0; i < 1000; i++) {
+            var name = " v" + i;
+            assertThat(symbols.intern(name, 1, name.length() - 1)).isSameAs(interned.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Every scanner gives each occurrence of a name the same lexeme")
+    void testScannersIntern() {
+        var diagnostics = new Diagnostics(new PrintStream(OutputStream.nullOutputStream()));
+
+        assertSameLexemes(new Scanner(SOURCE, diagnostics).scan().toList());
+        assertSameLexemes(new ByteScanner(SOURCE.getBytes(StandardCharsets.UTF_8), diagnostics).scan().toList());
+        assertSameLexemes(new ParallelScanner(SOURCE, diagnostics, 1).scan().toList());
+
+        var stream = new Scanner(SOURCE, diagnostics).stream();
+        var tokens = new ArrayList<Token>();
+        while (stream.peekType() != EOF) {
+            tokens.add(stream.peek());
+            stream.advance();
+        }
+        assertSameLexemes(tokens);
+    }
+
+    @Test
+    @DisplayName("Keywords are told from identifiers that only look like them")
+    void testKeywords() {
+        for (var type : List.of(AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
+                PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE)) {
+            var spelling = type.name().toLowerCase();
+            assertThat(TokenType.keyword(" " + spelling + " ", 1, spelling.length())).isEqualTo(type);
+            assertThat(TokenType.getKeyword(spelling)).contains(type);
+        }
+
+        for (var word : List.of("a", "i", "iff", "of", "fur", "fox", "thus", "tree", "classy", "returns", "Var", "")) {
+            assertThat(TokenType.keyword(word, 0, word.length())).isEqualTo(IDENTIFIER);
+            assertThat(TokenType.getKeyword(word)).isEmpty();
+        }
+    }
+
+    private static void assertSameLexemes(List<Token> tokens) {
+        var counts = tokens.stream().filter(token -> token.lexeme.equals("count")).toList();
+        assertThat(counts).hasSize(5);
+        assertThat(counts).allSatisfy(token -> {
+            assertThat(token.lexeme).isSameAs(counts.get(0).lexeme);
+            assertThat(token.literal).isNull();
+        });
+    }
+}
@@ -22,6 +22,10 @@ public class TestVisitors {
         @Override public Class<? extends Stmt> visitIfStmtStmt(Stmt.IfStmt stmt) {
             return Stmt.IfStmt.class;
         }
+
+        @Override public Class<? extends Stmt> visitWhileStmt(Stmt.While stmt) {
+            return Stmt.While.class;
+        }
     }
 
     static class BasicStmtVisitor<T> implements Stmt.Visitor<T> {
@@ -44,6 +48,10 @@ public class TestVisitors {
         @Override public T visitIfStmtStmt(Stmt.IfStmt stmt) {
             return null;
         }
+
+        @Override public T visitWhileStmt(Stmt.While stmt) {
+            return null;
+        }
     }
 
     static class ExprTypeVisitor implements Expr.Visitor<Class<? extends Expr>> {
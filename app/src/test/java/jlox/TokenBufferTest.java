@@ -0,0 +1,55 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static jlox.TokenType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBufferTest {
+
+    @Test
+    @DisplayName("Tokens materialized from the buffer match what the scanner saw")
+    void testMaterializedTokens() {
+        var tokens = new Scanner("var a = 1.5;\nprint \"x\" + a;").scan();
+
+        assertThat(tokens.toList()).containsExactly(
+                new Token(VAR, "var", null, 1),
+                new Token(IDENTIFIER, "a", null, 1),
+                new Token(EQUAL, "=", null, 1),
+                new Token(NUMBER, "1.5", 1.5, 1),
+                new Token(SEMICOLON, ";", null, 1),
+                new Token(PRINT, "print", null, 2),
+                new Token(STRING, "\"x\"", "x", 2),
+                new Token(PLUS, "+", null, 2),
+                new Token(IDENTIFIER, "a", null, 2),
+                new Token(SEMICOLON, ";", null, 2),
+                new Token(EOF, "", null, 2));
+    }
+
+    @Test
+    @DisplayName("Type, line and literal are read without materializing the token")
+    void testIndexedAccess() {
+        var tokens = new Scanner("a\n\"str\"").scan();
+
+        assertThat(tokens.size()).isEqualTo(3);
+        assertThat(tokens.type(0)).isEqualTo(IDENTIFIER);
+        assertThat(tokens.literal(0)).isNull();
+        assertThat(tokens.type(1)).isEqualTo(STRING);
+        assertThat(tokens.line(1)).isEqualTo(2);
+        assertThat(tokens.literal(1)).isEqualTo("str");
+        assertThat(tokens.lexeme(1)).isEqualTo("\"str\"");
+    }
+
+    @Test
+    @DisplayName("Buffer grows past its initial capacity")
+    void testGrowth() {
+        var source = "1 + ".repeat(1000) + "1;";
+        var tokens = new Scanner(source).scan();
+
+        assertThat(tokens.size()).isEqualTo(2003);
+        assertThat(tokens.literal(2000)).isEqualTo(1.0);
+        assertThat(tokens.type(2001)).isEqualTo(SEMICOLON);
+        assertThat(tokens.type(2002)).isEqualTo(EOF);
+    }
+}
@@ -0,0 +1,62 @@
+package jlox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static jlox.TokenType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenStreamTest {
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private final Diagnostics diagnostics = new Diagnostics(new PrintStream(err, true));
+
+    @Test
+    @DisplayName("Lazy stream produces the same tokens as the buffer")
+    void testLazyStreamMatchesBuffer() {
+        var source = "var a = 1.5;\n{ print \"x\" + a; }\n// comment\nif (a >= 2) a = nil;";
+
+        assertThat(drain(new Scanner(source, diagnostics).stream()))
+                .isEqualTo(drain(new Scanner(source, diagnostics).scan().stream()));
+    }
+
+    @Test
+    @DisplayName("Lazy stream only scans as far as the window reaches")
+    void testLazyStreamScansOnDemand() {
+        var stream = new Scanner("a @ b", diagnostics).stream();
+
+        assertThat(stream.peekType()).isEqualTo(IDENTIFIER);
+        assertThat(diagnostics.hadError()).isFalse();
+
+        stream.advance();
+        assertThat(err.toString()).contains("Unexpected character [@]");
+        assertThat(stream.peek()).isEqualTo(new Token(IDENTIFIER, "b", null, 1));
+        assertThat(stream.previous()).isEqualTo(new Token(IDENTIFIER, "a", null, 1));
+    }
+
+    @Test
+    @DisplayName("Window keeps the literal of the previous token")
+    void testPreviousLiteral() {
+        var stream = new Scanner("12 \"s\"", diagnostics).stream();
+
+        stream.advance();
+        assertThat(stream.previousLiteral()).isEqualTo(12.0);
+        stream.advance();
+        assertThat(stream.previousLiteral()).isEqualTo("s");
+        assertThat(stream.peekType()).isEqualTo(EOF);
+    }
+
+    private static List<Token> drain(TokenStream stream) {
+        var tokens = new ArrayList<Token>();
+        while (stream.peekType() != EOF) {
+            stream.advance();
+            tokens.add(stream.previous());
+        }
+        tokens.add(stream.peek());
+        return tokens;
+    }
+}
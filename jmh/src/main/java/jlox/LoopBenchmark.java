@@ -0,0 +1,58 @@
+package jlox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Loop heavy programs run by the Interpreter, with loops interpreted all the way through (plain)
+    or tiered up to compiled code once hot (hot). Each invocation gets a fresh Interpreter,
+    so what's measured for hot loops includes interpreting their first back edges and compiling them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopBenchmark {
+    @Param({"plain", "hot"})
+    public String loops;
+
+    private final PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+    private final Output nowhereOutput = Output.of(nowhere);
+    private final Diagnostics diagnostics = new Diagnostics(nowhere);
+
+    private List<Stmt> program;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        program = new Parser(new Scanner(LoxSources.loops(), diagnostics).scan(), diagnostics).parse();
+        if (diagnostics.hadError()) {
+            throw new IllegalStateException("Loop benchmark source doesn't parse");
+        }
+        new Resolver(new GlobalSlots()).resolve(program);
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        var threshold = loops.equals("hot") ? Interpreter.HOT_LOOP_THRESHOLD : Interpreter.NEVER;
+        var interpreter = new Interpreter(new Globals(), nowhereOutput, diagnostics, false, threshold);
+        interpreter.interpret(program);
+        return interpreter;
+    }
+}
@@ -0,0 +1,64 @@
+package jlox;
+
+/*
+    Generated Lox programs for the benchmarks. The same few statements are repeated
+    with different names and numbers, covering every kind of statement the language has,
+    and the programs run to completion without printing anything.
+ */
+final class LoxSources {
+    private LoxSources() {}
+
+    static String generate(String size) {
+        switch (size) {
+            case "small": return generate(10);
+            case "medium": return generate(1_000);
+            case "large": return generate(20_000);
+            default: throw new IllegalArgumentException("Unknown input size " + size);
+        }
+    }
+
+    static String generate(int units) {
+        var source = new StringBuilder();
+        for (int i = 0; i < units; i++) {
+            // A bounded set of globals, so large inputs don't just measure a huge Globals map
+            var v = "v" + (i % 64);
+            var s = "s" + (i % 64);
+
+            source.append("// unit ").append(i).append('\n')
+                  .append("var ").append(v).append(" = ").append(i).append(" * 2 + 1;\n")
+                  .append("var ").append(s).append(" = \"item\" + \"").append(i).append("\";\n")
+                  .append("{\n")
+                  .append("    var a = ").append(v).append(" - 3 / 4;\n")
+                  .append("    var b = (a + ").append(i).append(".5) * 2;\n")
+                  .append("    if (b > a) { ").append(v).append(" = b - a; } else { ").append(v).append(" = a; }\n")
+                  .append("    ").append(s).append(" = ").append(s).append(" + \"!\";\n")
+                  .append("}\n")
+                  .append("if (").append(v).append(" == nil) ").append(v).append(" = 0;\n")
+                  .append("if (!(").append(s).append(" != \"item\")) ").append(s).append(" = nil;\n")
+                  .append("for (var k = 0; k < 3; k = k + 1) ").append(v).append(" = ").append(v).append(" + k;\n");
+        }
+        return source.toString();
+    }
+
+    // A few nested loops over locals and globals, doing a few million iterations in all
+    static String loops() {
+        return "var total = 0;\n"
+                + "{\n"
+                + "    var sum = 0;\n"
+                + "    for (var i = 0; i < 1000000; i = i + 1) {\n"
+                + "        var sq = i * i;\n"
+                + "        if (sq / 2 > 1000) sum = sum + 1; else sum = sum + sq;\n"
+                + "    }\n"
+                + "    total = total + sum;\n"
+                + "}\n"
+                + "for (var j = 0; j < 1000; j = j + 1) {\n"
+                + "    var k = 0;\n"
+                + "    while (k < 100) {\n"
+                + "        total = total + j * k;\n"
+                + "        k = k + 1;\n"
+                + "    }\n"
+                + "}\n"
+                + "var s = \"\";\n"
+                + "for (var n = 0; n < 10000; n = n + 1) s = s + \"ab\";\n";
+    }
+}
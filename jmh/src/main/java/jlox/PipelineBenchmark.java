@@ -0,0 +1,107 @@
+package jlox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Each stage of the pipeline on its own, with its input prepared up front, and then
+    all of them together in a fresh LoxContext. Every benchmark returns what it produced,
+    so none of the work can be optimized away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private final LoxEngine engine = new LoxEngine();
+    private final PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+    private final Output nowhereOutput = Output.of(nowhere);
+    private final Diagnostics diagnostics = new Diagnostics(nowhere);
+
+    private String source;
+    private byte[] bytes;
+    private TokenBuffer tokens;
+    private List<Stmt> program;
+    private FlatAst flatProgram;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        source = LoxSources.generate(size);
+        bytes = source.getBytes(StandardCharsets.UTF_8);
+        tokens = new Scanner(source, diagnostics).scan();
+        program = new Parser(tokens, diagnostics).parse();
+        new Resolver(new GlobalSlots()).resolve(program);
+        flatProgram = FlatAst.of(program);
+
+        if (diagnostics.hadError()) {
+            throw new IllegalStateException("Generated benchmark source doesn't parse");
+        }
+    }
+
+    @Benchmark
+    public TokenBuffer scan() {
+        return new Scanner(source, diagnostics).scan();
+    }
+
+    @Benchmark
+    public TokenBuffer byteScan() {
+        return new ByteScanner(bytes, diagnostics).scan();
+    }
+
+    @Benchmark
+    public TokenBuffer parallelScan() {
+        return new ParallelScanner(source, diagnostics).scan();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, diagnostics).parse();
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        var interpreter = new Interpreter(nowhereOutput, diagnostics);
+        interpreter.interpret(program);
+        return interpreter;
+    }
+
+    @Benchmark
+    public FlatAst flatten() {
+        return FlatAst.of(program);
+    }
+
+    @Benchmark
+    public FlatInterpreter interpretFlat() {
+        var interpreter = new FlatInterpreter(nowhereOutput, diagnostics);
+        interpreter.interpret(flatProgram);
+        return interpreter;
+    }
+
+    @Benchmark
+    public LoxContext run() {
+        var context = engine.newContext(nowhere, nowhere);
+        context.run(source);
+        return context;
+    }
+}